@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.spring.ext.task.ContextAwareDecorator;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-task overhead of {@link ContextAwareDecorator}, with and without a request bound
+ * to the submitting thread, against running an undecorated task.
+ *
+ * @author Kevan Simpson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecoratorBenchmark {
+    @Param({ "false", "true" })
+    public boolean requestBound;
+
+    private final TaskDecorator decorator = new ContextAwareDecorator();
+    private Runnable task;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        task = () -> blackhole.consume(RequestContextHolder.getRequestAttributes());
+        RequestAttributes attributes =
+                requestBound ? new ServletRequestAttributes(new MockHttpServletRequest()) : null;
+        RequestContextHolder.setRequestAttributes(attributes);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public void baseline() {
+        task.run();
+    }
+
+    @Benchmark
+    public Runnable decorate() {
+        return decorator.decorate(task);
+    }
+
+    @Benchmark
+    public void decorateAndRun() {
+        decorator.decorate(task).run();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spring.ext.task.MultipleExecutorProperties;
+import org.spring.ext.task.MultipleExecutorSupport;
+import org.spring.ext.task.PoolConfig;
+import org.spring.ext.task.ShutdownConfig;
+import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures submit-to-complete latency and throughput of pools built by {@link MultipleExecutorSupport},
+ * across queue capacities, core sizes and rejection policies.
+ * <p>
+ * Each pool may grow to twice its core size. Rejected tasks are counted as completed,
+ * so that bounded queues with an <code>AbortPolicy</code> measure the cost of rejection.
+ *
+ * @author Kevan Simpson
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+    private static final int BATCH = 64;
+
+    /** A pool created from configuration, shared by all benchmark threads. */
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({ "16", "1024", "2147483647" })
+        public int queueCapacity;
+
+        @Param({ "2", "8" })
+        public int coreSize;
+
+        @Param({ "AbortPolicy", "CallerRunsPolicy" })
+        public String rejectedExecutionHandler;
+
+        public AsyncTaskExecutor executor;
+        private GenericApplicationContext context;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            PoolConfig config = new PoolConfig();
+            config.setQueueCapacity(queueCapacity);
+            config.setCoreSize(coreSize);
+            config.setMaxSize(coreSize * 2);
+            config.setRejectedExecutionHandler(rejectedExecutionHandler);
+            MultipleExecutorProperties properties = new MultipleExecutorProperties();
+            properties.getPools().put("benchPool", config);
+            properties.setShutdown(new ShutdownConfig());
+
+            context = new GenericApplicationContext();
+            context.refresh();
+            DefaultListableBeanFactory registry = context.getDefaultListableBeanFactory();
+            executor = MultipleExecutorSupport.createMultipleTaskExecutors(
+                    properties,
+                    registry.getBeanProvider(ThreadPoolTaskExecutorCustomizer.class),
+                    registry.getBeanProvider(TaskDecorator.class),
+                    registry,
+                    context).get("benchPool");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            ((ThreadPoolTaskExecutor) executor).shutdown();
+            context.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency(Pool pool) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        submit(pool.executor, done);
+        done.await();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(4)
+    @OperationsPerInvocation(BATCH)
+    public void throughput(Pool pool) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH);
+        for (int i = 0; i < BATCH; i++)
+            submit(pool.executor, done);
+        done.await();
+    }
+
+    private static void submit(AsyncTaskExecutor executor, CountDownLatch done) {
+        try {
+            executor.execute(done::countDown);
+        }
+        catch (TaskRejectedException ex) {
+            done.countDown();
+        }
+    }
+}
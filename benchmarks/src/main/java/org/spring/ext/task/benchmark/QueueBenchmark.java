@@ -0,0 +1,111 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spring.ext.task.PoolTaskExecutor;
+import org.spring.ext.task.QueueType;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end task throughput of a {@link PoolTaskExecutor} per {@link QueueType},
+ * with 4, 16 and 64 threads submitting tasks concurrently.
+ * <p>
+ * Each operation submits a batch of empty tasks and waits for them, so that the queue stays bounded
+ * and the score reflects queue contention rather than task cost.
+ *
+ * @author Kevan Simpson
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueBenchmark {
+    private static final int BATCH = 64;
+
+    /** A pool sized to the available processors, shared by all producer threads. */
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({ "LINKED", "TRANSFER" })
+        public QueueType queueType;
+
+        public PoolTaskExecutor executor;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            int threads = Runtime.getRuntime().availableProcessors();
+            executor = new PoolTaskExecutor();
+            executor.setQueueType(queueType);
+            executor.setCorePoolSize(threads);
+            executor.setMaxPoolSize(threads);
+            executor.setInstrumented(false);
+            executor.setThreadNamePrefix("bench-" + queueType + "-");
+            executor.initialize();
+            executor.getThreadPoolExecutor().prestartAllCoreThreads();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    @OperationsPerInvocation(BATCH)
+    public void producers4(Pool pool) throws InterruptedException {
+        submitBatch(pool.executor);
+    }
+
+    @Benchmark
+    @Threads(16)
+    @OperationsPerInvocation(BATCH)
+    public void producers16(Pool pool) throws InterruptedException {
+        submitBatch(pool.executor);
+    }
+
+    @Benchmark
+    @Threads(64)
+    @OperationsPerInvocation(BATCH)
+    public void producers64(Pool pool) throws InterruptedException {
+        submitBatch(pool.executor);
+    }
+
+    private static void submitBatch(PoolTaskExecutor executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH);
+        for (int i = 0; i < BATCH; i++)
+            executor.execute(done::countDown);
+        done.await();
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Adaptive pool sizing configuration, whose presence enables a {@link PoolSizeController} for the pool.
+ *
+ * @author Kevan Simpson
+ */
+@Data
+public class AdaptiveConfig {
+    private int minSize = 1;
+    private int maxSize = 64;
+    private Duration interval = Duration.ofSeconds(5L);
+    private double headroom = 0.2;
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules a {@link PoolSizeController} for each pool configured with {@link PoolConfig#getAdaptive() adaptive}
+ * sizing, sharing a single daemon thread which is only started when at least one pool is adaptive.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class AdaptivePoolSizer implements SmartLifecycle {
+    private final Map<String, PoolSizeController> controllers = new LinkedHashMap<>();
+    private final Map<String, AdaptiveConfig> configs = new LinkedHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates controllers for the adaptive pools among the given executors.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @param executors The executor beans mapped by configured name.
+     */
+    public AdaptivePoolSizer(MultipleExecutorProperties properties, Map<String, AsyncTaskExecutor> executors) {
+        properties.getPools().forEach((poolName, poolConfig) -> {
+            AdaptiveConfig adaptive = poolConfig.getAdaptive();
+            if (adaptive == null)
+                return;
+            if (executors.get(poolName) instanceof PoolTaskExecutor pool && poolConfig.isInstrumented()) {
+                controllers.put(poolName, new PoolSizeController(poolName, pool, adaptive));
+                configs.put(poolName, adaptive);
+            }
+            else
+                log.warn("Adaptive sizing requires an instrumented thread pool, ignoring pool {}", poolName);
+        });
+    }
+
+    /**
+     * Returns the controllers of adaptive pools.
+     *
+     * @return the controllers mapped by configured name.
+     */
+    public Map<String, PoolSizeController> getControllers() {
+        return controllers;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (controllers.isEmpty() || scheduler != null)
+            return;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("adaptive-pool-sizer-");
+        threadFactory.setDaemon(true);
+        scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        controllers.forEach((poolName, controller) -> {
+            long interval = configs.get(poolName).getInterval().toMillis();
+            log.info("Adaptive sizing of pool {} every {}ms", poolName, interval);
+            scheduler.scheduleAtFixedRate(controller, interval, interval, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+}
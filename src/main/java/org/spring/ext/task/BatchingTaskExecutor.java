@@ -0,0 +1,336 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link AsyncTaskExecutor} which buffers submitted tasks and hands them to a worker pool as batches,
+ * so that queueing and thread wakeups are paid once per batch rather than once per task.
+ * <p>
+ * A batch is flushed when it reaches its size limit, on the submitting thread, or once its first task
+ * has waited the maximum delay, on a timer thread. Tasks are decorated when submitted and run in order,
+ * unless a {@link TaskBatchProcessor} is given, which receives batches of items instead. Items are submitted
+ * with {@link #submitItem(Object)}, whose future completes once the item's batch has been processed.
+ * Tasks given to {@link #execute(Runnable)} are passed to the processor as items, while tasks submitted for
+ * a {@link Future} are rejected, as the processor would never complete it.
+ * If the worker pool rejects a batch, each of its tasks is counted as rejected and, if it is a
+ * {@link Future}, cancelled.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class BatchingTaskExecutor implements AsyncTaskExecutor, InstrumentedExecutor, DisposableBean {
+    private final PoolTaskExecutor workers;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final TaskBatchProcessor<Object> processor;
+    private final ScheduledExecutorService timer;
+    private final ExecutorStats stats = new ExecutorStats();
+    private final Object lock = new Object();
+    private boolean instrumented = true;
+    private TaskDecorator taskDecorator;
+    private TaskDecorator effectiveDecorator;
+
+    private List<Object> tasks;
+    private List<Runnable> decorated;
+    private List<CompletableFuture<Void>> futures;
+    private ScheduledFuture<?> flush;
+    private boolean shutdown;
+
+    /**
+     * Creates a batching executor.
+     *
+     * @param poolName The name of the executor pool, used to name its timer thread.
+     * @param workers The initialized pool which runs batches.
+     * @param batchSize The maximum number of tasks in a batch.
+     * @param maxDelay The maximum time a task waits for its batch to be flushed.
+     * @param processor The optional processor of batches of items, without which batches run their tasks in order.
+     */
+    @SuppressWarnings("unchecked")
+    public BatchingTaskExecutor(String poolName, PoolTaskExecutor workers, int batchSize,
+                                Duration maxDelay, @Nullable TaskBatchProcessor<?> processor) {
+        this.workers = workers;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.processor = (TaskBatchProcessor<Object>) processor;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(poolName + "-batch-");
+        threadFactory.setDaemon(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies a {@link TaskDecorator} to be applied to each task when it is submitted.
+     *
+     * @param taskDecorator The optional task decorator.
+     */
+    public void setTaskDecorator(@Nullable TaskDecorator taskDecorator) {
+        this.taskDecorator = taskDecorator;
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies whether queue and execution times of each task are recorded, defaults to <code>true</code>.
+     *
+     * @param instrumented The flag to record task timings.
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+        resolveDecorator();
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the pool which runs batches, each as a single task.
+     *
+     * @return the worker pool.
+     */
+    public PoolTaskExecutor getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Returns the number of tasks waiting for their batch to be flushed.
+     *
+     * @return the number of buffered tasks.
+     */
+    public int getBufferedCount() {
+        synchronized (lock) {
+            return (tasks != null) ? tasks.size() : 0;
+        }
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        if (processor != null)
+            buffer(task, null, null);
+        else
+            buffer(task, (effectiveDecorator != null) ? effectiveDecorator.decorate(task) : task, null);
+    }
+
+    /**
+     * Submits an item to be processed in a batch by the {@link TaskBatchProcessor} of this executor.
+     *
+     * @param item The item to process.
+     * @return a future completed once the item's batch has been processed, or exceptionally if it failed.
+     * @throws IllegalStateException if this executor has no batch processor.
+     * @throws TaskRejectedException if this executor has been shut down, or its batch was rejected.
+     */
+    public CompletableFuture<Void> submitItem(Object item) {
+        if (processor == null)
+            throw new IllegalStateException("Batching executor has no batch processor, submit tasks instead");
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        buffer(item, null, future);
+        return future;
+    }
+
+    @Override @NonNull
+    public Future<?> submit(@NonNull Runnable task) {
+        rejectForProcessor(task);
+        return AsyncTaskExecutor.super.submit(task);
+    }
+
+    @Override @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> task) {
+        rejectForProcessor(task);
+        return AsyncTaskExecutor.super.submit(task);
+    }
+
+    @Override @NonNull
+    public CompletableFuture<Void> submitCompletable(@NonNull Runnable task) {
+        rejectForProcessor(task);
+        return AsyncTaskExecutor.super.submitCompletable(task);
+    }
+
+    @Override @NonNull
+    public <T> CompletableFuture<T> submitCompletable(@NonNull Callable<T> task) {
+        rejectForProcessor(task);
+        return AsyncTaskExecutor.super.submitCompletable(task);
+    }
+
+    /**
+     * Hands any buffered tasks to the worker pool as a batch, without waiting for the batch to fill.
+     */
+    public void flush() {
+        List<Object> batchTasks;
+        List<Runnable> batchDecorated;
+        List<CompletableFuture<Void>> batchFutures;
+        synchronized (lock) {
+            batchTasks = tasks;
+            batchDecorated = decorated;
+            batchFutures = futures;
+            clearBuffer();
+        }
+        if (batchTasks != null) {
+            try {
+                dispatch(batchTasks, batchDecorated, batchFutures);
+            }
+            catch (TaskRejectedException ex) {
+                log.warn("Batch of {} tasks rejected: {}", batchTasks.size(), ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Flushes buffered tasks and shuts down the worker pool, which only runs the flushed batches
+     * if it waits for tasks to complete on shutdown.
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+        }
+        flush();
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+
+    private void rejectForProcessor(Object task) {
+        if (processor != null)
+            throw new TaskRejectedException("Batch processor would not complete the future of task " + task
+                    + ", submit items with submitItem instead");
+    }
+
+    /**
+     * Adds a task or item to the current batch, dispatching the batch once it is full.
+     *
+     * @param task The submitted task, or item of a batch processor.
+     * @param runnable The decorated task, or <code>null</code> with a batch processor.
+     * @param future The future of an item, or <code>null</code>.
+     */
+    private void buffer(Object task, @Nullable Runnable runnable, @Nullable CompletableFuture<Void> future) {
+        List<Object> fullTasks = null;
+        List<Runnable> fullDecorated = null;
+        List<CompletableFuture<Void>> fullFutures = null;
+        synchronized (lock) {
+            if (shutdown) {
+                stats.recordRejected();
+                throw new TaskRejectedException("Executor has been shut down, did not accept task: " + task);
+            }
+            if (tasks == null) {
+                tasks = new ArrayList<>(batchSize);
+                if (processor != null)
+                    futures = new ArrayList<>(batchSize);
+                else
+                    decorated = new ArrayList<>(batchSize);
+                flush = timer.schedule(this::flush, maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+            tasks.add(task);
+            if (processor != null)
+                futures.add(future);
+            else
+                decorated.add(runnable);
+            if (tasks.size() >= batchSize) {
+                fullTasks = tasks;
+                fullDecorated = decorated;
+                fullFutures = futures;
+                clearBuffer();
+            }
+        }
+        if (fullTasks != null)
+            dispatch(fullTasks, fullDecorated, fullFutures);
+    }
+
+    private void clearBuffer() {
+        if (flush != null)
+            flush.cancel(false);
+        tasks = null;
+        decorated = null;
+        futures = null;
+        flush = null;
+    }
+
+    private void dispatch(List<Object> batchTasks, List<Runnable> batchDecorated,
+                          List<CompletableFuture<Void>> batchFutures) {
+        try {
+            if (processor != null)
+                workers.execute(() -> process(batchTasks, batchFutures));
+            else
+                workers.execute(() -> runAll(batchDecorated));
+        }
+        catch (TaskRejectedException ex) {
+            for (int i = 0; i < batchTasks.size(); i++) {
+                stats.recordRejected();
+                if (batchTasks.get(i) instanceof Future<?> future)
+                    future.cancel(false);
+                else if (batchFutures != null && batchFutures.get(i) != null)
+                    batchFutures.get(i).completeExceptionally(ex);
+            }
+            throw ex;
+        }
+    }
+
+    private void process(List<Object> items, List<CompletableFuture<Void>> itemFutures) {
+        try {
+            processor.process(items);
+        }
+        catch (RuntimeException ex) {
+            log.error("Batch of {} items failed", items.size(), ex);
+            for (CompletableFuture<Void> future : itemFutures) {
+                if (future != null)
+                    future.completeExceptionally(ex);
+            }
+            return;
+        }
+        for (CompletableFuture<Void> future : itemFutures) {
+            if (future != null)
+                future.complete(null);
+        }
+    }
+
+    private static void runAll(List<Runnable> batch) {
+        for (Runnable task : batch) {
+            try {
+                task.run();
+            }
+            catch (RuntimeException ex) {
+                log.error("Batched task failed", ex);
+            }
+        }
+    }
+
+    private void resolveDecorator() {
+        this.effectiveDecorator = instrumented ? new TimingDecorator(stats, taskDecorator) : taskDecorator;
+    }
+}
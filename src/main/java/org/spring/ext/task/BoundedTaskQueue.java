@@ -0,0 +1,211 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.lang.NonNull;
+import org.springframework.util.Assert;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds an unbounded {@link BlockingQueue}, such as a {@link java.util.concurrent.LinkedTransferQueue}
+ * or {@link java.util.concurrent.PriorityBlockingQueue}, to a capacity which may be changed while in use.
+ * <p>
+ * Free slots are held as {@link Semaphore} permits, so offering a task costs a single atomic update
+ * beyond the underlying queue, {@link #put(Runnable)} blocks until a slot is free, and
+ * {@link #size()} is constant-time. Shrinking the capacity below the current size keeps queued tasks,
+ * refusing new ones until enough have been taken.
+ *
+ * @author Kevan Simpson
+ */
+public class BoundedTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    private final BlockingQueue<Runnable> queue;
+    private final Slots slots;
+    private volatile int capacity;
+
+    /**
+     * Creates a bounded view of the given queue, which must initially be empty.
+     *
+     * @param queue The unbounded queue holding tasks.
+     * @param capacity The maximum number of queued tasks.
+     */
+    public BoundedTaskQueue(BlockingQueue<Runnable> queue, int capacity) {
+        this.queue = queue;
+        this.capacity = capacity;
+        this.slots = new Slots(capacity);
+    }
+
+    /**
+     * Changes the maximum number of queued tasks.
+     *
+     * @param capacity The new maximum number of queued tasks.
+     * @throws IllegalArgumentException if the capacity is not positive.
+     */
+    public synchronized void setCapacity(int capacity) {
+        Assert.isTrue(capacity > 0, "Queue capacity must be positive");
+        int delta = capacity - this.capacity;
+        if (delta > 0)
+            slots.release(delta);
+        else if (delta < 0)
+            slots.reduce(-delta);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the maximum number of queued tasks.
+     *
+     * @return the queue capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the underlying unbounded queue.
+     *
+     * @return the queue holding tasks.
+     */
+    public BlockingQueue<Runnable> getQueue() {
+        return queue;
+    }
+
+    @Override
+    public boolean offer(@NonNull Runnable task) {
+        return slots.tryAcquire() && enqueue(task);
+    }
+
+    @Override
+    public boolean offer(@NonNull Runnable task, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return slots.tryAcquire(timeout, unit) && enqueue(task);
+    }
+
+    @Override
+    public void put(@NonNull Runnable task) throws InterruptedException {
+        slots.acquire();
+        enqueue(task);
+    }
+
+    @Override
+    public Runnable poll() {
+        return dequeued(queue.poll());
+    }
+
+    @Override
+    public Runnable poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return dequeued(queue.poll(timeout, unit));
+    }
+
+    @Override @NonNull
+    public Runnable take() throws InterruptedException {
+        return dequeued(queue.take());
+    }
+
+    @Override
+    public Runnable peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        boolean removed = queue.remove(task);
+        if (removed)
+            slots.release();
+        return removed;
+    }
+
+    @Override
+    public boolean contains(Object task) {
+        return queue.contains(task);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> tasks) {
+        return drainTo(tasks, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> tasks, int maxElements) {
+        int drained = 0;
+        Runnable task;
+        while (drained < maxElements && (task = poll()) != null) {
+            tasks.add(task);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override @NonNull
+    public Iterator<Runnable> iterator() {
+        Iterator<Runnable> iterator = queue.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Runnable next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                iterator.remove();
+                slots.release();
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return capacity - slots.availablePermits();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, slots.availablePermits());
+    }
+
+    private boolean enqueue(Runnable task) {
+        if (queue.offer(task))
+            return true;
+        slots.release();
+        return false;
+    }
+
+    private Runnable dequeued(Runnable task) {
+        if (task != null)
+            slots.release();
+        return task;
+    }
+
+    /** A semaphore whose permits can be withdrawn while held, to shrink the capacity. */
+    private static final class Slots extends Semaphore {
+        Slots(int permits) {
+            super(permits);
+        }
+
+        void reduce(int permits) {
+            reducePermits(permits);
+        }
+    }
+}
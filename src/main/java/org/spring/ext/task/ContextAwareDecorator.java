@@ -18,28 +18,95 @@ package org.spring.ext.task;
 
 import org.springframework.core.task.TaskDecorator;
 import org.springframework.lang.NonNull;
-import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.lang.Nullable;
 
-import static org.springframework.web.context.request.RequestContextHolder.*;
+import java.util.List;
 
 /**
- * A {@link TaskDecorator} which passes thread-local attributes via
- * {@link org.springframework.web.context.request.RequestContextHolder}.
+ * A {@link TaskDecorator} which passes thread-local contexts to worker threads via {@link ContextPropagator}s,
+ * by default the request attributes of {@link org.springframework.web.context.request.RequestContextHolder}.
+ * <p>
+ * All contexts are captured in one pass on the submitting thread. When none is present, as for tasks
+ * submitted by schedulers or message listeners, the task is returned undecorated without allocating.
+ * Otherwise each captured context is applied around the task, and the worker's own contexts are restored
+ * afterwards, so a task run by its submitting thread (e.g. <code>CallerRunsPolicy</code>) leaves them intact.
  *
  * @author Kevan Simpson
  */
 public class ContextAwareDecorator implements TaskDecorator {
+    private final ContextPropagator<Object>[] propagators;
+
+    /**
+     * Creates a decorator which propagates request attributes.
+     */
+    public ContextAwareDecorator() {
+        this(List.of(ContextPropagators.requestAttributes()));
+    }
+
+    /**
+     * Creates a decorator which propagates the given contexts, applied in order.
+     *
+     * @param propagators The context propagators.
+     */
+    @SuppressWarnings("unchecked")
+    public ContextAwareDecorator(List<? extends ContextPropagator<?>> propagators) {
+        this.propagators = propagators.toArray(ContextPropagator[]::new);
+    }
+
+    /**
+     * Returns the propagated contexts, so that decorators composed for a pool can share a single wrapper.
+     *
+     * @return the context propagators, in the order they are applied.
+     */
+    public List<ContextPropagator<?>> getPropagators() {
+        return List.of(propagators);
+    }
+
     @Override @NonNull
     public Runnable decorate(@NonNull Runnable runnable) {
-        RequestAttributes attributes = getRequestAttributes();
-        return () -> {
-            try {
-                setRequestAttributes(attributes, true);
-                runnable.run();
+        Object[] captured = capture();
+        return (captured != null) ? () -> run(runnable, captured) : runnable;
+    }
+
+    /**
+     * Captures the contexts of the current thread, for a wrapper which runs its task with {@link #run}.
+     *
+     * @return the captured contexts, or <code>null</code> if none is present.
+     */
+    @Nullable
+    Object[] capture() {
+        Object[] snapshot = null;
+        for (int i = 0; i < propagators.length; i++) {
+            Object context = propagators[i].capture();
+            if (context != null) {
+                if (snapshot == null)
+                    snapshot = new Object[propagators.length];
+                snapshot[i] = context;
             }
-            finally {
-                resetRequestAttributes();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Runs a task within captured contexts, restoring the current thread's own contexts afterwards.
+     *
+     * @param runnable The task to run.
+     * @param captured The contexts captured on the submitting thread.
+     */
+    void run(Runnable runnable, Object[] captured) {
+        Object[] previous = new Object[captured.length];
+        for (int i = 0; i < captured.length; i++) {
+            if (captured[i] != null)
+                previous[i] = propagators[i].apply(captured[i]);
+        }
+        try {
+            runnable.run();
+        }
+        finally {
+            for (int i = captured.length - 1; i >= 0; i--) {
+                if (captured[i] != null)
+                    propagators[i].restore(previous[i]);
             }
-        };
+        }
     }
 }
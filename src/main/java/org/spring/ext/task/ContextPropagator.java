@@ -0,0 +1,55 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * Captures a thread-local context on a submitting thread and restores it around a task on a worker thread.
+ * <p>
+ * {@link ContextAwareDecorator} captures all of its propagators in one pass, and only decorates a task
+ * when at least one of them returns a non-null value from {@link #capture()}.
+ *
+ * @param <T> The type of the captured context.
+ * @author Kevan Simpson
+ */
+public interface ContextPropagator<T> {
+    /**
+     * Captures the current thread's context.
+     *
+     * @return the context, or <code>null</code> if there is nothing to propagate.
+     */
+    @Nullable
+    T capture();
+
+    /**
+     * Applies a captured context to the current thread.
+     *
+     * @param captured The context captured on the submitting thread.
+     * @return the context it replaces, to be restored after the task has run.
+     */
+    @Nullable
+    T apply(@NonNull T captured);
+
+    /**
+     * Restores the context which was replaced by {@link #apply(Object)}.
+     *
+     * @param previous The replaced context, or <code>null</code> to clear it.
+     */
+    void restore(@Nullable T previous);
+}
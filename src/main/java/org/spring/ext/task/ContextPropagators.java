@@ -0,0 +1,161 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Map;
+
+/**
+ * Factory methods for the {@link ContextPropagator} implementations of each {@link PropagatedContext}.
+ *
+ * @author Kevan Simpson
+ */
+public class ContextPropagators {
+    /**
+     * Instantiation of this class is not supported.
+     * @throws UnsupportedOperationException if instantiated.
+     */
+    protected ContextPropagators() {
+        throw new UnsupportedOperationException("Static utility class");
+    }
+
+    /**
+     * Propagates {@link RequestAttributes} via {@link RequestContextHolder}, inheritable by child threads.
+     *
+     * @return a request attributes propagator.
+     */
+    public static ContextPropagator<RequestAttributes> requestAttributes() {
+        return new ContextPropagator<>() {
+            @Override
+            public RequestAttributes capture() {
+                return RequestContextHolder.getRequestAttributes();
+            }
+
+            @Override
+            public RequestAttributes apply(@NonNull RequestAttributes captured) {
+                RequestAttributes previous = RequestContextHolder.getRequestAttributes();
+                RequestContextHolder.setRequestAttributes(captured, true);
+                return previous;
+            }
+
+            @Override
+            public void restore(RequestAttributes previous) {
+                if (previous == null)
+                    RequestContextHolder.resetRequestAttributes();
+                else
+                    RequestContextHolder.setRequestAttributes(previous);
+            }
+        };
+    }
+
+    /**
+     * Propagates the Log4j2 {@link ThreadContext} map, which backs the SLF4J MDC.
+     *
+     * @return a mapped diagnostic context propagator.
+     */
+    public static ContextPropagator<Map<String, String>> mdc() {
+        return new ContextPropagator<>() {
+            @Override
+            public Map<String, String> capture() {
+                return ThreadContext.isEmpty() ? null : ThreadContext.getImmutableContext();
+            }
+
+            @Override
+            public Map<String, String> apply(@NonNull Map<String, String> captured) {
+                Map<String, String> previous = capture();
+                ThreadContext.clearMap();
+                ThreadContext.putAll(captured);
+                return previous;
+            }
+
+            @Override
+            public void restore(Map<String, String> previous) {
+                ThreadContext.clearMap();
+                if (previous != null)
+                    ThreadContext.putAll(previous);
+            }
+        };
+    }
+
+    /**
+     * Propagates the {@link LocaleContext} via {@link LocaleContextHolder}.
+     *
+     * @return a locale context propagator.
+     */
+    public static ContextPropagator<LocaleContext> localeContext() {
+        return new ContextPropagator<>() {
+            @Override
+            public LocaleContext capture() {
+                return LocaleContextHolder.getLocaleContext();
+            }
+
+            @Override
+            public LocaleContext apply(@NonNull LocaleContext captured) {
+                LocaleContext previous = LocaleContextHolder.getLocaleContext();
+                LocaleContextHolder.setLocaleContext(captured);
+                return previous;
+            }
+
+            @Override
+            public void restore(LocaleContext previous) {
+                LocaleContextHolder.setLocaleContext(previous);
+            }
+        };
+    }
+
+    /**
+     * Propagates an authenticated {@link SecurityContext} via the {@link SecurityContextHolderStrategy}.
+     * Requires Spring Security, an optional dependency.
+     * <p>
+     * Reading the holder stores an empty context when there is none, so the worker's previous context is
+     * restored rather than cleared, leaving that empty context in place for the next task instead of
+     * creating one per task.
+     *
+     * @return a security context propagator.
+     */
+    public static ContextPropagator<SecurityContext> securityContext() {
+        return new ContextPropagator<>() {
+            @Override
+            public SecurityContext capture() {
+                SecurityContext context = SecurityContextHolder.getContextHolderStrategy().getContext();
+                return (context.getAuthentication() != null) ? context : null;
+            }
+
+            @Override
+            public SecurityContext apply(@NonNull SecurityContext captured) {
+                SecurityContextHolderStrategy strategy = SecurityContextHolder.getContextHolderStrategy();
+                SecurityContext previous = strategy.getContext();
+                strategy.setContext(captured);
+                return previous;
+            }
+
+            @Override
+            public void restore(SecurityContext previous) {
+                SecurityContextHolder.getContextHolderStrategy().setContext(previous);
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A task with a deadline, which is skipped rather than run if its deadline has passed, or its future has been
+ * cancelled, by the time a worker takes it from the queue, e.g. because the caller waiting for it timed out.
+ * <p>
+ * The future of a skipped task completes exceptionally with a {@link TaskExpiredException}, and the skip is
+ * counted by the {@link ExecutorStats} of an {@link InstrumentedExecutor}. A {@link Prioritized} task keeps
+ * its priority.
+ * <pre>
+ * CompletableFuture&lt;Quote&gt; quote = DeadlineTask.submit(executor, Duration.ofSeconds(2), () -&gt; quote(id));
+ * </pre>
+ *
+ * @param <T> The type of the task's result.
+ * @author Kevan Simpson
+ */
+public class DeadlineTask<T> implements Runnable {
+    private final Callable<T> task;
+    private final long deadline;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private final ExecutorStats stats;
+
+    private DeadlineTask(Callable<T> task, Duration timeToLive, ExecutorStats stats) {
+        this.task = task;
+        this.deadline = System.nanoTime() + timeToLive.toNanos();
+        this.stats = stats;
+    }
+
+    /**
+     * Submits a task which is skipped if it has not started within the given time.
+     *
+     * @param executor The executor to run the task.
+     * @param timeToLive The time within which the task must start.
+     * @param task The task to call.
+     * @param <T> The type of the task's result.
+     * @return a future completed with the task's result, or with a {@link TaskExpiredException}.
+     * @throws TaskRejectedException if the executor rejects the task.
+     */
+    public static <T> CompletableFuture<T> submit(AsyncTaskExecutor executor, Duration timeToLive, Callable<T> task) {
+        ExecutorStats stats = (executor instanceof InstrumentedExecutor instrumented) ? instrumented.getStats() : null;
+        DeadlineTask<T> deadlineTask = new DeadlineTask<>(task, timeToLive, stats);
+        executor.execute((task instanceof Prioritized prioritized)
+                ? PriorityTask.of(prioritized.getPriority(), deadlineTask)
+                : deadlineTask);
+        return deadlineTask.future;
+    }
+
+    /**
+     * Submits a task which is skipped if it has not started within the given time.
+     *
+     * @param executor The executor to run the task.
+     * @param timeToLive The time within which the task must start.
+     * @param task The task to run.
+     * @return a future completed when the task has run, or with a {@link TaskExpiredException}.
+     * @throws TaskRejectedException if the executor rejects the task.
+     */
+    public static CompletableFuture<Void> submit(AsyncTaskExecutor executor, Duration timeToLive, Runnable task) {
+        Callable<Void> callable = (task instanceof Prioritized prioritized)
+                ? PriorityTask.callable(prioritized.getPriority(), () -> {
+                    task.run();
+                    return null;
+                })
+                : () -> {
+                    task.run();
+                    return null;
+                };
+        return submit(executor, timeToLive, callable);
+    }
+
+    @Override
+    public void run() {
+        if (future.isDone() || System.nanoTime() - deadline > 0L) {
+            if (stats != null)
+                stats.recordExpired();
+            future.completeExceptionally(new TaskExpiredException("Task expired before it started: " + task));
+            return;
+        }
+        try {
+            future.complete(task.call());
+        }
+        catch (Throwable ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Task counters, cumulative timings and latency histograms for a single executor pool.
+ * Uses {@link LongAdder} and {@link LatencyHistogram} so that recording from many worker threads does not contend.
+ *
+ * @author Kevan Simpson
+ */
+public class ExecutorStats {
+    /** The period over which {@link #getThroughput()} is measured, in whole seconds. */
+    public static final int THROUGHPUT_SECONDS = 10;
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder running = new LongAdder();
+    private final LongAdder queuedCount = new LongAdder();
+    private final LongAdder queuedNanos = new LongAdder();
+    private final LongAdder executedCount = new LongAdder();
+    private final LongAdder executedNanos = new LongAdder();
+    private final LatencyHistogram queuedHistogram = new LatencyHistogram();
+    private final LatencyHistogram executedHistogram = new LatencyHistogram();
+    private final RunningTasks runningTasks;
+    private final long createdNanos = System.nanoTime();
+    private final AtomicLong currentSecond = new AtomicLong(-1L);
+    private final AtomicReferenceArray<SecondCount> secondCounts =
+            new AtomicReferenceArray<>(THROUGHPUT_SECONDS + 1);
+
+    public ExecutorStats() {
+        this(false);
+    }
+
+    /**
+     * @param threadPerTask Whether the pool starts a thread for each task, as virtual thread pools do.
+     */
+    public ExecutorStats(boolean threadPerTask) {
+        this.runningTasks = new RunningTasks(threadPerTask);
+    }
+
+    /**
+     * Records a task rejected by its executor.
+     */
+    public void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Records a {@link DeadlineTask} skipped because it expired while queued.
+     */
+    public void recordExpired() {
+        expired.increment();
+    }
+
+    /**
+     * Records a task found by a {@link SlowTaskDetector} to have run longer than its threshold.
+     */
+    public void recordSlow() {
+        slow.increment();
+    }
+
+    /**
+     * Records a task starting execution.
+     *
+     * @param queuedNanos The time the task waited between submission and execution.
+     */
+    public void recordStarted(long queuedNanos) {
+        running.increment();
+        queuedCount.increment();
+        this.queuedNanos.add(queuedNanos);
+        queuedHistogram.record(queuedNanos);
+    }
+
+    /**
+     * Records a task finishing execution, successfully or not.
+     *
+     * @param executedNanos The time the task spent executing.
+     * @param finishedNanos The {@link System#nanoTime()} at which the task finished.
+     */
+    public void recordFinished(long executedNanos, long finishedNanos) {
+        running.decrement();
+        countSecond(finishedNanos);
+        executedCount.increment();
+        this.executedNanos.add(executedNanos);
+        executedHistogram.record(executedNanos);
+    }
+
+    /** @return the number of rejected tasks. */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /** @return the number of tasks skipped because they expired while queued. */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /** @return the number of tasks which have run longer than the slow-task threshold. */
+    public long getSlowCount() {
+        return slow.sum();
+    }
+
+    /** @return the approximate number of tasks currently executing. */
+    public long getRunningCount() {
+        return running.sum();
+    }
+
+    /** @return the number of tasks which have left the queue. */
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    /** @return the total time tasks have spent queued, in nanoseconds. */
+    public long getQueuedNanos() {
+        return queuedNanos.sum();
+    }
+
+    /** @return the number of tasks which have finished execution. */
+    public long getExecutedCount() {
+        return executedCount.sum();
+    }
+
+    /**
+     * Returns the rate at which tasks have finished over the last {@link #THROUGHPUT_SECONDS} seconds,
+     * or since the stats were created if more recently.
+     *
+     * @return the tasks finished per second.
+     */
+    public double getThroughput() {
+        long now = System.nanoTime();
+        long second = (now - createdNanos) / SECOND_NANOS;
+        long from = Math.max(0L, second - THROUGHPUT_SECONDS);
+        long count = executedCount.sum();
+        // the count as of the first second with a finished task within the window, unchanged before it
+        SecondCount earliest = null;
+        for (int i = 0; i < secondCounts.length(); i++) {
+            SecondCount each = secondCounts.get(i);
+            if (each != null && each.second() >= from && (earliest == null || each.second() < earliest.second()))
+                earliest = each;
+        }
+        long elapsed = now - createdNanos - from * SECOND_NANOS;
+        return (earliest != null && elapsed > 0L) ? (count - earliest.count()) * 1.0e9 / elapsed : 0.0;
+    }
+
+    /** @return the total time tasks have spent executing, in nanoseconds. */
+    public long getExecutedNanos() {
+        return executedNanos.sum();
+    }
+
+    /** @return the distribution of time tasks have spent queued. */
+    public LatencyHistogram getQueuedHistogram() {
+        return queuedHistogram;
+    }
+
+    /** @return the distribution of time tasks have spent executing. */
+    public LatencyHistogram getExecutedHistogram() {
+        return executedHistogram;
+    }
+
+    /** @return the tasks currently executing, per thread. */
+    public RunningTasks getRunningTasks() {
+        return runningTasks;
+    }
+
+    /**
+     * Keeps the finished count as of the first task finishing in each second, so that throughput
+     * is measured over a fixed window however rarely it is read, at the cost of one read per task.
+     */
+    private void countSecond(long finishedNanos) {
+        long second = (finishedNanos - createdNanos) / SECOND_NANOS;
+        long current = currentSecond.get();
+        if (second > current && currentSecond.compareAndSet(current, second))
+            secondCounts.set((int) (second % secondCounts.length()), new SecondCount(second, executedCount.sum()));
+    }
+
+    /** The number of finished tasks at the start of a second since the stats were created. */
+    private record SecondCount(long second, long count) {
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+/**
+ * The kind of {@link org.springframework.core.task.AsyncTaskExecutor AsyncTaskExecutor}
+ * created for a configured pool.
+ *
+ * @author Kevan Simpson
+ */
+public enum ExecutorType {
+    /** A {@link org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor ThreadPoolTaskExecutor}. */
+    THREAD_POOL,
+    /** A {@link VirtualTaskExecutor}, which falls back to {@link #THREAD_POOL} before Java 21. */
+    VIRTUAL,
+    /** A {@link ForkJoinTaskExecutor} with a dedicated, work-stealing {@link java.util.concurrent.ForkJoinPool}. */
+    FORK_JOIN,
+    /** A {@link BatchingTaskExecutor}, which runs tasks in batches on a thread pool. */
+    BATCHING,
+    /** A {@link StripedTaskExecutor}, which runs tasks in order per key on a thread pool. */
+    STRIPED
+}
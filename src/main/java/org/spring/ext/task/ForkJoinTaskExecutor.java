@@ -0,0 +1,126 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsyncTaskExecutor} backed by a dedicated {@link ForkJoinPool}, for CPU-bound pools.
+ * <p>
+ * Each worker thread has its own deque, from which idle workers steal, so tasks which split themselves
+ * recursively with {@link java.util.concurrent.ForkJoinTask#fork() fork} scale far better than on the
+ * single shared queue of a {@link java.util.concurrent.ThreadPoolExecutor}. The underlying pool is
+ * available from {@link #getForkJoinPool()} to <code>invoke</code> tasks directly.
+ *
+ * @author Kevan Simpson
+ */
+public class ForkJoinTaskExecutor implements AsyncTaskExecutor, InstrumentedExecutor, DisposableBean {
+    private final ForkJoinPool forkJoinPool;
+    private final ExecutorStats stats = new ExecutorStats();
+    private boolean instrumented = true;
+    private TaskDecorator taskDecorator;
+    private TaskDecorator effectiveDecorator;
+
+    /**
+     * Creates an executor with a dedicated fork-join pool.
+     *
+     * @param threadNamePrefix The prefix for worker thread names.
+     * @param parallelism The target number of active worker threads.
+     * @param asyncMode <code>true</code> to process forked tasks in FIFO rather than LIFO order.
+     */
+    public ForkJoinTaskExecutor(String threadNamePrefix, int parallelism, boolean asyncMode) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.forkJoinPool = new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(threadNamePrefix + threadCount.incrementAndGet());
+            return thread;
+        }, null, asyncMode);
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies a {@link TaskDecorator} to be applied to any task about to be executed.
+     *
+     * @param taskDecorator The optional task decorator.
+     */
+    public void setTaskDecorator(@Nullable TaskDecorator taskDecorator) {
+        this.taskDecorator = taskDecorator;
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies whether queue and execution times are recorded, defaults to <code>true</code>.
+     *
+     * @param instrumented The flag to record task timings.
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+        resolveDecorator();
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the underlying pool, e.g. to <code>invoke</code> a {@link java.util.concurrent.RecursiveTask}.
+     * Tasks submitted directly to the pool are not decorated or instrumented.
+     *
+     * @return the fork-join pool.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        try {
+            forkJoinPool.execute((effectiveDecorator != null) ? effectiveDecorator.decorate(task) : task);
+        }
+        catch (RejectedExecutionException ex) {
+            stats.recordRejected();
+            throw new TaskRejectedException("Executor [" + forkJoinPool + "] did not accept task: " + task, ex);
+        }
+    }
+
+    /**
+     * Initiates an orderly shutdown of the underlying pool, in which previously submitted tasks are executed.
+     */
+    public void shutdown() {
+        forkJoinPool.shutdown();
+    }
+
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+
+    private void resolveDecorator() {
+        this.effectiveDecorator = instrumented ? new TimingDecorator(stats, taskDecorator) : taskDecorator;
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+/**
+ * An executor which records {@link ExecutorStats} for the tasks it runs.
+ *
+ * @author Kevan Simpson
+ */
+public interface InstrumentedExecutor {
+    /**
+     * Returns the statistics of this executor.
+     *
+     * @return the executor statistics, never <code>null</code>.
+     */
+    ExecutorStats getStats();
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free, fixed-size histogram of nanosecond latencies using HDR-style log-linear buckets.
+ * <p>
+ * Each power of two is split into {@value #SUB_BUCKET_COUNT} linear sub-buckets, so recorded values
+ * are accurate to within ~3% over the full range of <code>long</code>, while recording is a single
+ * atomic increment with no allocation.
+ *
+ * @author Kevan Simpson
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    /** The number of linear sub-buckets per power of two. */
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Records a single latency value, negative values are recorded as zero.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(0L, nanos)));
+    }
+
+    /**
+     * Returns the total number of recorded values.
+     *
+     * @return the number of recorded values.
+     */
+    public long getCount() {
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += counts.get(i);
+        return total;
+    }
+
+    /**
+     * Returns the highest value equivalent to the value at the given percentile.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return the latency in nanoseconds, or zero if nothing has been recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            total += (snapshot[i] = counts.get(i));
+        if (total == 0L)
+            return 0L;
+
+        long target = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * total));
+        long cumulative = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += snapshot[i];
+            if (cumulative >= target)
+                return highestValueOf(i);
+        }
+        return highestValueOf(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently may or may not be retained.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            counts.set(i, 0L);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1L;
+    }
+}
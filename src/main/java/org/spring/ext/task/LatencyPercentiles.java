@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Point-in-time percentiles of a {@link LatencyHistogram}.
+ *
+ * @author Kevan Simpson
+ */
+@Value
+public class LatencyPercentiles {
+    long count;
+    Duration p50;
+    Duration p99;
+    Duration p999;
+
+    /**
+     * Computes the percentiles of the given histogram.
+     *
+     * @param histogram The source of recorded latencies.
+     * @return the latency percentiles.
+     */
+    public static LatencyPercentiles of(LatencyHistogram histogram) {
+        return new LatencyPercentiles(
+                histogram.getCount(),
+                Duration.ofNanos(histogram.getValueAtPercentile(50.0)),
+                Duration.ofNanos(histogram.getValueAtPercentile(99.0)),
+                Duration.ofNanos(histogram.getValueAtPercentile(99.9)));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * An {@link AsyncTaskExecutor} which creates its {@link PoolTaskExecutor} on first use,
+ * so that rarely used pools cost neither startup time nor threads until a task is submitted.
+ * <p>
+ * Stats are recorded from the start, into the same {@link ExecutorStats} the pool is created with,
+ * while views of the pool itself, such as Micrometer gauges, are added {@link #whenInitialized once it exists}.
+ * Every submission is delegated to the pool, keeping the priority of {@link Prioritized} tasks.
+ * Once {@link #close() closed}, a pool which was never created is never created, and tasks are rejected.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class LazyTaskExecutor implements AsyncTaskExecutor, InstrumentedExecutor, DisposableBean {
+    private final String poolName;
+    private final Function<ExecutorStats, PoolTaskExecutor> factory;
+    private final ExecutorStats stats = new ExecutorStats();
+    private final List<Consumer<PoolTaskExecutor>> initializers = new ArrayList<>();
+    private volatile PoolTaskExecutor executor;
+    private boolean closed;
+
+    /**
+     * Creates a lazy executor.
+     *
+     * @param poolName The name of the executor pool.
+     * @param factory Creates the initialized pool, recording into the given stats.
+     */
+    public LazyTaskExecutor(String poolName, Function<ExecutorStats, PoolTaskExecutor> factory) {
+        this.poolName = poolName;
+        this.factory = factory;
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the pool, creating it if this is its first use.
+     *
+     * @return the initialized pool.
+     * @throws TaskRejectedException if the executor was closed before the pool was created.
+     */
+    public PoolTaskExecutor getExecutor() {
+        PoolTaskExecutor pool = executor;
+        return (pool != null) ? pool : initialize();
+    }
+
+    /**
+     * Returns the pool if it has been created, without creating it.
+     *
+     * @return the initialized pool, or <code>null</code>.
+     */
+    @Nullable
+    public PoolTaskExecutor getIfInitialized() {
+        return executor;
+    }
+
+    /**
+     * Registers a callback to receive the pool once it is created, or at once if it already has been.
+     *
+     * @param initializer The callback receiving the initialized pool.
+     */
+    public synchronized void whenInitialized(Consumer<PoolTaskExecutor> initializer) {
+        if (executor != null)
+            initializer.accept(executor);
+        else
+            initializers.add(initializer);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        getExecutor().execute(task);
+    }
+
+    @Override @NonNull
+    public Future<?> submit(@NonNull Runnable task) {
+        return getExecutor().submit(task);
+    }
+
+    @Override @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> task) {
+        return getExecutor().submit(task);
+    }
+
+    @Override @NonNull
+    public CompletableFuture<Void> submitCompletable(@NonNull Runnable task) {
+        return getExecutor().submitCompletable(task);
+    }
+
+    @Override @NonNull
+    public <T> CompletableFuture<T> submitCompletable(@NonNull Callable<T> task) {
+        return getExecutor().submitCompletable(task);
+    }
+
+    /**
+     * Executes a task if the pool can accept it, creating the pool if this is its first use.
+     *
+     * @param task The task to execute.
+     * @return <code>true</code> if the task was accepted, or <code>false</code> if it was refused.
+     * @see PoolTaskExecutor#tryExecute(Runnable)
+     */
+    public boolean tryExecute(@NonNull Runnable task) {
+        return getExecutor().tryExecute(task);
+    }
+
+    /**
+     * Returns whether the pool is shedding load, without creating it.
+     *
+     * @return <code>true</code> if new tasks will be rejected.
+     * @see PoolTaskExecutor#isOverloaded()
+     */
+    public boolean isOverloaded() {
+        PoolTaskExecutor pool = executor;
+        return pool != null && pool.isOverloaded();
+    }
+
+    /**
+     * Refuses to create the pool from now on, leaving a pool already created running.
+     */
+    public synchronized void close() {
+        closed = true;
+    }
+
+    @Override
+    public void destroy() {
+        close();
+        PoolTaskExecutor pool = executor;
+        if (pool != null)
+            pool.destroy();
+    }
+
+    private synchronized PoolTaskExecutor initialize() {
+        if (executor == null) {
+            if (closed)
+                throw new TaskRejectedException("Lazy pool " + poolName + " has been shut down, not creating it");
+            log.info("Creating lazy pool {} on first use", poolName);
+            PoolTaskExecutor pool = factory.apply(stats);
+            initializers.forEach(initializer -> initializer.accept(pool));
+            initializers.clear();
+            executor = pool;
+        }
+        return executor;
+    }
+}
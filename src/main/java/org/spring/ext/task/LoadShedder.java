@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects a standing queue from the time tasks wait in it and sheds load at a rising rate, following
+ * CoDel (Controlled Delay), so that a pool can shed load before its queue is full.
+ * <p>
+ * A queue which absorbs a burst drains quickly, while one which stands adds latency to every task.
+ * Once every task leaving the queue for a whole <code>interval</code> has waited longer than
+ * <code>target</code>, the queue is standing and the shedder starts dropping; the first task
+ * waiting less than <code>target</code> ends it. While dropping, CoDel's control law decides which
+ * new tasks are shed: one at once, and each next one <code>interval / sqrt(count)</code> after the
+ * previous, <code>count</code> being the number shed so far, so that the rate rises until the queue
+ * drains. Dropping again soon after it ended resumes near the previous rate. Unlike a queue capacity,
+ * neither setting depends on how long tasks take to run.
+ *
+ * @author Kevan Simpson
+ */
+public class LoadShedder {
+    private final long targetNanos;
+    private final long intervalNanos;
+    // when the queue will be standing if no task leaves it sooner than target, or 0 if below target
+    private volatile long firstAboveTime;
+    private volatile boolean dropping;
+    // when the next task is shed while dropping, and its number since dropping began
+    private final AtomicLong dropNext = new AtomicLong();
+    private volatile int count;
+
+    /**
+     * Creates a load shedder.
+     *
+     * @param target The acceptable time for tasks to wait in the queue.
+     * @param interval How long tasks must wait longer than the target before load is shed.
+     */
+    public LoadShedder(Duration target, Duration interval) {
+        this.targetNanos = target.toNanos();
+        this.intervalNanos = interval.toNanos();
+    }
+
+    /**
+     * Creates a load shedder from configuration.
+     *
+     * @param config The shedding configuration.
+     * @return the load shedder.
+     */
+    public static LoadShedder of(SheddingConfig config) {
+        return new LoadShedder(config.getTarget(), config.getInterval());
+    }
+
+    /**
+     * Records the time a task waited in the queue, as it leaves the queue.
+     *
+     * @param sojournNanos The time the task waited, in nanoseconds.
+     */
+    public void onDequeue(long sojournNanos) {
+        if (sojournNanos < targetNanos) {
+            // avoid writing shared state while the queue is healthy
+            if (firstAboveTime != 0L)
+                firstAboveTime = 0L;
+            if (dropping)
+                dropping = false;
+            return;
+        }
+        long now = System.nanoTime();
+        long aboveTime = firstAboveTime;
+        if (aboveTime == 0L)
+            firstAboveTime = (now + intervalNanos) | 1L; // odd, so never 0
+        else if (!dropping && now - aboveTime >= 0L)
+            startDropping(now);
+    }
+
+    /**
+     * Decides whether to shed a new task, by the control law while dropping.
+     *
+     * @param now The current {@link System#nanoTime() time}.
+     * @return <code>true</code> if the task should be shed.
+     */
+    public boolean shouldShed(long now) {
+        if (!dropping)
+            return false;
+        long next = dropNext.get();
+        if (now - next < 0L)
+            return false;
+        // one of the tasks submitted at once is shed, the others are admitted
+        int shed = count;
+        if (!dropNext.compareAndSet(next, now + (long) (intervalNanos / Math.sqrt(shed))))
+            return false;
+        count = shed + 1;
+        return true;
+    }
+
+    /**
+     * Returns whether tasks have waited longer than the target for at least an interval.
+     *
+     * @return <code>true</code> if load is being shed.
+     */
+    public boolean isDropping() {
+        return dropping;
+    }
+
+    private synchronized void startDropping(long now) {
+        if (dropping)
+            return;
+        // the queue was not under control if it stands again soon after dropping ended
+        int previous = count;
+        count = (previous > 2 && now - dropNext.get() < 16 * intervalNanos) ? previous - 2 : 1;
+        dropNext.set(now);
+        dropping = true;
+    }
+}
@@ -16,8 +16,11 @@
 
 package org.spring.ext.task;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
@@ -27,6 +30,8 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskDecorator;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.spring.ext.task.MultipleExecutorSupport.createMultipleTaskExecutors;
@@ -42,15 +47,21 @@ import static org.spring.ext.task.MultipleExecutorSupport.createMultipleTaskExec
 public class MultipleExecutorAutoConfiguration {
 
     /**
-     * Injects a {@link TaskDecorator} which passes thread-local attributes via
-     * {@link org.springframework.web.context.request.RequestContextHolder}
-     * using the name &quot;contextAwareDecorator&quot;.
+     * Injects a {@link TaskDecorator} which passes the configured thread-local contexts,
+     * followed by any {@link ContextPropagator} beans, using the name &quot;contextAwareDecorator&quot;.
      *
+     * @param properties Configuration properties for executor beans.
+     * @param contextPropagators Optionally provided context propagators.
      * @return a <code>TaskDecorator</code> bean.
      */
     @Bean
-    public ContextAwareDecorator contextAwareDecorator() {
-        return new ContextAwareDecorator();
+    public ContextAwareDecorator contextAwareDecorator(
+            MultipleExecutorProperties properties,
+            ObjectProvider<ContextPropagator<?>> contextPropagators) {
+        List<ContextPropagator<?>> propagators = new ArrayList<>();
+        properties.getPropagate().forEach(context -> propagators.add(context.propagator()));
+        contextPropagators.orderedStream().forEach(propagators::add);
+        return new ContextAwareDecorator(propagators);
     }
 
     /**
@@ -78,4 +89,137 @@ public class MultipleExecutorAutoConfiguration {
                 registry,
                 applicationContext);
     }
+
+    /**
+     * Injects queue wait and execution latency percentiles of configuration-defined executors.
+     *
+     * @param multipleTaskExecutors The executor beans mapped by configured name.
+     * @return a <code>MultipleExecutorLatencies</code> bean.
+     */
+    @Bean
+    public MultipleExecutorLatencies multipleExecutorLatencies(
+            @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors) {
+        return new MultipleExecutorLatencies(multipleTaskExecutors);
+    }
+
+    /**
+     * Injects a helper which fans tasks out to configuration-defined executors and joins their results.
+     *
+     * @param multipleTaskExecutors The executor beans mapped by configured name.
+     * @return a <code>MultipleExecutorScopes</code> bean.
+     */
+    @Bean
+    public MultipleExecutorScopes multipleExecutorScopes(
+            @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors) {
+        return new MultipleExecutorScopes(multipleTaskExecutors);
+    }
+
+    /**
+     * Injects a listener which applies refreshed configuration to the configuration-defined executors.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @param multipleTaskExecutors The executor beans mapped by configured name.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param poolChangeListeners Optionally provided listeners to pools being added or removed.
+     * @param registry Bean definition registry.
+     * @param applicationContext Eponymous application context.
+     * @return a <code>MultipleExecutorRefresher</code> bean.
+     */
+    @Bean
+    public MultipleExecutorRefresher multipleExecutorRefresher(
+            MultipleExecutorProperties properties,
+            @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ObjectProvider<PoolChangeListener> poolChangeListeners,
+            DefaultListableBeanFactory registry,
+            ApplicationContext applicationContext) {
+        return new MultipleExecutorRefresher(properties, multipleTaskExecutors, taskExecutorCustomizer,
+                taskDecorator, poolChangeListeners, registry, applicationContext);
+    }
+
+    /**
+     * Injects a controller which resizes configuration-defined executors with adaptive sizing.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @param multipleTaskExecutors The executor beans mapped by configured name.
+     * @return an <code>AdaptivePoolSizer</code> bean.
+     */
+    @Bean
+    public AdaptivePoolSizer adaptivePoolSizer(
+            MultipleExecutorProperties properties,
+            @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors) {
+        return new AdaptivePoolSizer(properties, multipleTaskExecutors);
+    }
+
+    /**
+     * Injects a watchdog which reports slow tasks of configuration-defined executors with a watchdog.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @param multipleTaskExecutors The executor beans mapped by configured name.
+     * @return a <code>SlowTaskWatchdog</code> bean.
+     */
+    @Bean
+    public SlowTaskWatchdog slowTaskWatchdog(
+            MultipleExecutorProperties properties,
+            @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors) {
+        return new SlowTaskWatchdog(properties, multipleTaskExecutors);
+    }
+
+    /**
+     * Injects a coordinator which shuts configuration-defined executors down in phases when the context closes.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @param multipleTaskExecutors The executor beans mapped by configured name.
+     * @param multipleExecutorRefresher The refresher holding the applied pool configurations.
+     * @return a <code>MultipleExecutorShutdown</code> bean.
+     */
+    @Bean
+    public MultipleExecutorShutdown multipleExecutorShutdown(
+            MultipleExecutorProperties properties,
+            @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors,
+            MultipleExecutorRefresher multipleExecutorRefresher) {
+        return new MultipleExecutorShutdown(properties, multipleTaskExecutors, multipleExecutorRefresher);
+    }
+
+    /**
+     * Binds configuration-defined executors to Micrometer when it is present.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterBinder.class)
+    static class MultipleExecutorMetricsConfiguration {
+        /**
+         * Injects a {@link MeterBinder} for the configuration-defined executors.
+         *
+         * @param multipleTaskExecutors The executor beans mapped by configured name.
+         * @return a <code>MeterBinder</code> bean.
+         */
+        @Bean
+        public MultipleExecutorMetrics multipleExecutorMetrics(
+                @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors) {
+            return new MultipleExecutorMetrics(multipleTaskExecutors);
+        }
+    }
+
+    /**
+     * Exposes the state of configuration-defined executors as an actuator endpoint when Actuator is present.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(Endpoint.class)
+    static class MultipleExecutorEndpointConfiguration {
+        /**
+         * Injects the <code>executors</code> actuator endpoint.
+         *
+         * @param multipleTaskExecutors The executor beans mapped by configured name.
+         * @param multipleExecutorRefresher The refresher holding the applied pool configurations.
+         * @return a <code>MultipleExecutorEndpoint</code> bean.
+         */
+        @Bean
+        public MultipleExecutorEndpoint multipleExecutorEndpoint(
+                @Qualifier("multipleTaskExecutors") Map<String, AsyncTaskExecutor> multipleTaskExecutors,
+                MultipleExecutorRefresher multipleExecutorRefresher) {
+            return new MultipleExecutorEndpoint(multipleTaskExecutors, multipleExecutorRefresher);
+        }
+    }
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.Data;
+import lombok.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * An actuator endpoint, <code>/actuator/executors</code>, reporting the live state of configuration-defined
+ * executors, and applying refreshed configuration to them on <code>POST</code>.
+ * <p>
+ * For each pool it reports the configured and actual sizes, queue depth, the age of the oldest queued task,
+ * recent throughput, task counts and a stack sample of each busy worker. State is read from the pool's
+ * counters and queue head, and stacks only from the threads which {@link RunningTasks} reports as busy,
+ * so neither the pool nor the JVM is paused as by a full thread dump. Busy workers and queued task ages
+ * are tracked for instrumented pools.
+ *
+ * @author Kevan Simpson
+ */
+@Endpoint(id = "executors")
+public class MultipleExecutorEndpoint {
+    private static final int MAX_FRAMES = 32;
+
+    private final Map<String, AsyncTaskExecutor> executors;
+    private final MultipleExecutorRefresher refresher;
+
+    /**
+     * Creates an endpoint for the given executors.
+     *
+     * @param executors The executor beans mapped by configured name.
+     * @param refresher The refresher holding the applied pool configurations.
+     */
+    public MultipleExecutorEndpoint(Map<String, AsyncTaskExecutor> executors, MultipleExecutorRefresher refresher) {
+        this.executors = executors;
+        this.refresher = refresher;
+    }
+
+    /**
+     * Reports the state of every pool.
+     *
+     * @return the pool states mapped by configured name.
+     */
+    @ReadOperation
+    public Map<String, PoolState> executors() {
+        Map<String, PoolConfig> configs = refresher.getPoolConfigs();
+        Map<String, PoolState> states = new LinkedHashMap<>();
+        executors.forEach((poolName, executor) ->
+                states.put(poolName, stateOf(poolName, configs.get(poolName), executor)));
+        return states;
+    }
+
+    /**
+     * Reports the state of a single pool.
+     *
+     * @param name The name of the executor pool.
+     * @return the pool state, or <code>null</code> if no pool has the given name.
+     */
+    @ReadOperation
+    @Nullable
+    public PoolState executor(@Selector String name) {
+        AsyncTaskExecutor executor = executors.get(name);
+        return (executor != null) ? stateOf(name, refresher.getPoolConfigs().get(name), executor) : null;
+    }
+
+    /**
+     * Rebinds <code>base.task</code> properties from the environment and applies them to the pools,
+     * as described by {@link MultipleExecutorRefresher}.
+     *
+     * @return the names of the pools which were reconfigured, added or removed.
+     */
+    @WriteOperation
+    public Set<String> refresh() {
+        return refresher.refresh();
+    }
+
+    private PoolState stateOf(String poolName, @Nullable PoolConfig config, AsyncTaskExecutor executor) {
+        PoolState state = new PoolState();
+        state.setExecutor(executor.getClass().getSimpleName());
+        state.setInitialized(true);
+        if (config != null) {
+            state.setType(config.getType());
+            state.setConfigured(new PoolSizes(config.getCoreSize(), config.getMaxSize(), config.getQueueCapacity()));
+        }
+
+        if (executor instanceof PoolTaskExecutor pool)
+            threadPool(state, pool);
+        else if (executor instanceof LazyTaskExecutor lazy) {
+            PoolTaskExecutor pool = lazy.getIfInitialized();
+            if (pool != null)
+                threadPool(state, pool);
+            else
+                state.setInitialized(false);
+        }
+        else if (executor instanceof BatchingTaskExecutor batching) {
+            threadPool(state, batching.getWorkers());
+            state.setBuffered(batching.getBufferedCount());
+        }
+        else if (executor instanceof StripedTaskExecutor striped) {
+            threadPool(state, striped.getWorkers());
+            state.setBuffered(striped.getQueuedCount());
+        }
+        else if (executor instanceof ThrottledTaskExecutor throttled) {
+            threadPool(state, throttled.getWorkers());
+            state.setBuffered(throttled.getPendingCount());
+        }
+        else if (executor instanceof ForkJoinTaskExecutor forkJoin) {
+            ForkJoinPool pool = forkJoin.getForkJoinPool();
+            state.setActual(new PoolSizes(pool.getParallelism(), pool.getParallelism(), null));
+            state.setPoolSize(pool.getPoolSize());
+            state.setActiveCount(pool.getActiveThreadCount());
+            state.setQueueSize((int) Math.min(Integer.MAX_VALUE,
+                    pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount()));
+        }
+        else if (executor instanceof VirtualTaskExecutor virtual) {
+            state.setActiveCount((int) virtual.getStats().getRunningCount());
+            state.setQueueSize(virtual.getQueueSize());
+        }
+
+        if (executor instanceof InstrumentedExecutor instrumented) {
+            ExecutorStats stats = instrumented.getStats();
+            state.setCompletedCount(stats.getExecutedCount());
+            state.setRejectedCount(stats.getRejectedCount());
+            state.setExpiredCount(stats.getExpiredCount());
+            state.setSlowCount(stats.getSlowCount());
+            state.setThroughput(stats.getThroughput());
+            state.setBusyWorkers(busyWorkers(stats.getRunningTasks()));
+        }
+        return state;
+    }
+
+    private static void threadPool(PoolState state, PoolTaskExecutor pool) {
+        ThreadPoolExecutor executor = pool.getThreadPoolExecutor();
+        int queueSize = executor.getQueue().size();
+        int remaining = executor.getQueue().remainingCapacity();
+        state.setActual(new PoolSizes(executor.getCorePoolSize(), executor.getMaximumPoolSize(),
+                (remaining < Integer.MAX_VALUE - queueSize) ? queueSize + remaining : Integer.MAX_VALUE));
+        state.setPoolSize(executor.getPoolSize());
+        state.setActiveCount(executor.getActiveCount());
+        state.setQueueSize(queueSize);
+        state.setOldestQueuedTaskAge(pool.getOldestQueuedTaskAge());
+        state.setOverloaded(pool.isOverloaded());
+        if (pool.getOverflow() != null)
+            state.setBuffered(pool.getOverflow().size());
+    }
+
+    private static List<BusyWorker> busyWorkers(RunningTasks runningTasks) {
+        List<BusyWorker> workers = new ArrayList<>();
+        for (RunningTasks.RunningTask running : runningTasks.sample()) {
+            // only this thread is briefly stopped to walk its stack
+            StackTraceElement[] stack = running.getThread().getStackTrace();
+            workers.add(new BusyWorker(running.getThread().getName(), String.valueOf(running.getTask()),
+                    running.getRunningTime(), Arrays.stream(stack).limit(MAX_FRAMES).map(String::valueOf).toList()));
+        }
+        return workers;
+    }
+
+    /**
+     * The live state of a single pool, whose fields are <code>null</code> where they do not apply.
+     */
+    @Data
+    public static class PoolState {
+        private String executor;
+        private ExecutorType type;
+        private boolean initialized;
+        private PoolSizes configured;
+        private PoolSizes actual;
+        private Integer poolSize;
+        private Integer activeCount;
+        private Integer queueSize;
+        private Integer buffered;
+        private Duration oldestQueuedTaskAge;
+        private Double throughput;
+        private Long completedCount;
+        private Long rejectedCount;
+        private Long expiredCount;
+        private Long slowCount;
+        private Boolean overloaded;
+        private List<BusyWorker> busyWorkers;
+    }
+
+    /**
+     * Core and maximum thread counts and queue capacity, as configured or as applied to the running pool.
+     */
+    @Value
+    public static class PoolSizes {
+        Integer coreSize;
+        Integer maxSize;
+        Integer queueCapacity;
+    }
+
+    /**
+     * A worker thread busy running a task, with the top frames of its stack.
+     */
+    @Value
+    public static class BusyWorker {
+        String thread;
+        String task;
+        Duration runningTime;
+        List<String> stackTrace;
+    }
+}
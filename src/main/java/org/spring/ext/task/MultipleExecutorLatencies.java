@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Exposes queue wait and execution latency percentiles of configuration-defined executors,
+ * as recorded by their {@link TimingDecorator}.
+ *
+ * @author Kevan Simpson
+ */
+public class MultipleExecutorLatencies {
+    private final Map<String, AsyncTaskExecutor> executors;
+
+    /**
+     * Creates latency views of the given executors.
+     *
+     * @param executors The executor beans mapped by configured name.
+     */
+    public MultipleExecutorLatencies(Map<String, AsyncTaskExecutor> executors) {
+        this.executors = executors;
+    }
+
+    /**
+     * Returns percentiles of the time tasks have spent queued, per instrumented pool.
+     *
+     * @return the queue latencies mapped by configured name.
+     */
+    public Map<String, LatencyPercentiles> getQueueLatencies() {
+        return percentiles(ExecutorStats::getQueuedHistogram);
+    }
+
+    /**
+     * Returns percentiles of the time tasks have spent executing, per instrumented pool.
+     *
+     * @return the execution latencies mapped by configured name.
+     */
+    public Map<String, LatencyPercentiles> getExecutionLatencies() {
+        return percentiles(ExecutorStats::getExecutedHistogram);
+    }
+
+    /**
+     * Clears the latency histograms of the given pool, to begin a new measurement interval.
+     *
+     * @param poolName The name of the executor pool.
+     */
+    public void reset(String poolName) {
+        if (executors.get(poolName) instanceof InstrumentedExecutor instrumented) {
+            instrumented.getStats().getQueuedHistogram().reset();
+            instrumented.getStats().getExecutedHistogram().reset();
+        }
+    }
+
+    private Map<String, LatencyPercentiles> percentiles(Function<ExecutorStats, LatencyHistogram> histogram) {
+        Map<String, LatencyPercentiles> latencies = new LinkedHashMap<>();
+        executors.forEach((poolName, executor) -> {
+            if (executor instanceof InstrumentedExecutor instrumented)
+                latencies.put(poolName, LatencyPercentiles.of(histogram.apply(instrumented.getStats())));
+        });
+        return latencies;
+    }
+}
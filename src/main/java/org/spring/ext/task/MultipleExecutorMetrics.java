@@ -0,0 +1,207 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.lang.NonNull;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MeterBinder} for configuration-defined {@link AsyncTaskExecutor} beans, tagged by pool name.
+ * <p>
+ * Thread and fork-join pool gauges use the same <code>executor.*</code> names as Micrometer's
+ * {@link ExecutorServiceMetrics}, to which rejected task counts and queued (<code>executor.idle</code>) and
+ * execution (<code>executor</code>) timers are added from {@link ExecutorStats}, along with their p50, p99 and p999 as
+ * <code>*.percentile</code> gauges tagged by <code>phi</code>. Pools in a {@link PoolGroup} count the tasks they
+ * have run for siblings as <code>executor.steals</code>, and pools with an {@link OverflowFile} count the tasks
+ * it holds as <code>executor.spilled</code>. Gauges of a {@link LazyTaskExecutor} are bound
+ * once its pool has been created. Pools added or removed by a {@link MultipleExecutorRefresher}
+ * have their meters bound or removed in every registry already bound.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class MultipleExecutorMetrics implements MeterBinder, PoolChangeListener {
+    private static final double[] PERCENTILES = { 0.5, 0.99, 0.999 };
+
+    private final Map<String, AsyncTaskExecutor> executors;
+    private final List<MeterRegistry> registries = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a binder for the given executors.
+     *
+     * @param executors The executor beans mapped by configured name.
+     */
+    public MultipleExecutorMetrics(Map<String, AsyncTaskExecutor> executors) {
+        this.executors = executors;
+    }
+
+    @Override
+    public void bindTo(@NonNull MeterRegistry registry) {
+        registries.add(registry);
+        executors.forEach((poolName, executor) -> bindTo(registry, poolName, executor));
+    }
+
+    @Override
+    public void poolAdded(String poolName, AsyncTaskExecutor executor) {
+        registries.forEach(registry -> bindTo(registry, poolName, executor));
+    }
+
+    @Override
+    public void poolRemoved(String poolName, AsyncTaskExecutor executor) {
+        log.debug("Removing metrics for pool: {}", poolName);
+        for (MeterRegistry registry : registries) {
+            for (Meter meter : registry.getMeters()) {
+                if (meter.getId().getName().startsWith("executor") && poolName.equals(meter.getId().getTag("name")))
+                    registry.remove(meter);
+            }
+        }
+    }
+
+    private void bindTo(MeterRegistry registry, String poolName, AsyncTaskExecutor executor) {
+        log.debug("Binding metrics for pool: {}", poolName);
+        Tags tags = Tags.of("name", poolName);
+        if (executor instanceof ThreadPoolTaskExecutor pool)
+            bindPool(registry, poolName, tags, pool);
+        else if (executor instanceof LazyTaskExecutor lazy)
+            lazy.whenInitialized(pool -> bindPool(registry, poolName, tags, pool));
+        else if (executor instanceof BatchingTaskExecutor batching) {
+            new ExecutorServiceMetrics(batching.getWorkers().getThreadPoolExecutor(), poolName, Tags.empty())
+                    .bindTo(registry);
+            Gauge.builder("executor.buffered", batching, BatchingTaskExecutor::getBufferedCount)
+                    .tags(tags)
+                    .description("The number of tasks waiting for their batch to be flushed")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+        }
+        else if (executor instanceof StripedTaskExecutor striped) {
+            new ExecutorServiceMetrics(striped.getWorkers().getThreadPoolExecutor(), poolName, Tags.empty())
+                    .bindTo(registry);
+            Gauge.builder("executor.buffered", striped, StripedTaskExecutor::getQueuedCount)
+                    .tags(tags)
+                    .description("The number of tasks waiting in their lanes")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+        }
+        else if (executor instanceof ThrottledTaskExecutor throttled) {
+            new ExecutorServiceMetrics(throttled.getWorkers().getThreadPoolExecutor(), poolName, Tags.empty())
+                    .bindTo(registry);
+            Gauge.builder("executor.buffered", throttled, ThrottledTaskExecutor::getPendingCount)
+                    .tags(tags)
+                    .description("The number of tasks waiting for a rate or concurrency permit")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+        }
+        else if (executor instanceof ForkJoinTaskExecutor forkJoin)
+            new ExecutorServiceMetrics(forkJoin.getForkJoinPool(), poolName, Tags.empty()).bindTo(registry);
+        else if (executor instanceof VirtualTaskExecutor virtual) {
+            Gauge.builder("executor.active", virtual, v -> v.getStats().getRunningCount())
+                    .tags(tags)
+                    .description("The approximate number of virtual threads that are actively executing tasks")
+                    .baseUnit(BaseUnits.THREADS)
+                    .register(registry);
+            Gauge.builder("executor.queued", virtual, VirtualTaskExecutor::getQueueSize)
+                    .tags(tags)
+                    .description("The approximate number of tasks that are waiting for a concurrency permit")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+            FunctionCounter.builder("executor.completed", virtual, v -> v.getStats().getExecutedCount())
+                    .tags(tags)
+                    .description("The approximate total number of tasks that have completed execution")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+        }
+
+        if (executor instanceof InstrumentedExecutor instrumented) {
+            ExecutorStats stats = instrumented.getStats();
+            FunctionCounter.builder("executor.rejected", stats, ExecutorStats::getRejectedCount)
+                    .tags(tags)
+                    .description("The total number of tasks that have been rejected")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+            FunctionCounter.builder("executor.expired", stats, ExecutorStats::getExpiredCount)
+                    .tags(tags)
+                    .description("The total number of tasks skipped because they expired while queued")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+            FunctionCounter.builder("executor.slow", stats, ExecutorStats::getSlowCount)
+                    .tags(tags)
+                    .description("The total number of tasks which have run longer than the watchdog threshold")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+            FunctionTimer.builder("executor", stats,
+                            ExecutorStats::getExecutedCount, ExecutorStats::getExecutedNanos, TimeUnit.NANOSECONDS)
+                    .tags(tags)
+                    .description("The time tasks have spent executing")
+                    .register(registry);
+            FunctionTimer.builder("executor.idle", stats,
+                            ExecutorStats::getQueuedCount, ExecutorStats::getQueuedNanos, TimeUnit.NANOSECONDS)
+                    .tags(tags)
+                    .description("The time tasks have spent queued before executing")
+                    .register(registry);
+            for (double phi : PERCENTILES) {
+                bindPercentile(registry, "executor.percentile", tags, phi, stats.getExecutedHistogram());
+                bindPercentile(registry, "executor.idle.percentile", tags, phi, stats.getQueuedHistogram());
+            }
+        }
+    }
+
+    private static void bindPool(MeterRegistry registry, String poolName, Tags tags, ThreadPoolTaskExecutor pool) {
+        new ExecutorServiceMetrics(pool.getThreadPoolExecutor(), poolName, Tags.empty()).bindTo(registry);
+        if (pool instanceof PoolTaskExecutor taskPool) {
+            Gauge.builder("executor.overloaded", taskPool, p -> p.isOverloaded() ? 1.0 : 0.0)
+                    .tags(tags)
+                    .description("Whether the pool is shedding load, rejecting new tasks while its queue stands")
+                    .register(registry);
+            if (taskPool.getOverflow() != null)
+                Gauge.builder("executor.spilled", taskPool.getOverflow(), OverflowFile::size)
+                        .tags(tags)
+                        .description("The number of tasks spilled to the overflow file, waiting to be replayed")
+                        .baseUnit(BaseUnits.TASKS)
+                        .register(registry);
+        }
+        if (pool.getThreadPoolExecutor().getQueue() instanceof StealingTaskQueue queue)
+            FunctionCounter.builder("executor.steals", queue, StealingTaskQueue::getStolenCount)
+                    .tags(tags)
+                    .description("The total number of tasks queued by sibling pools which this pool has run")
+                    .baseUnit(BaseUnits.TASKS)
+                    .register(registry);
+    }
+
+    private static void bindPercentile(
+            MeterRegistry registry, String name, Tags tags, double phi, LatencyHistogram histogram) {
+        TimeGauge.builder(name, histogram, TimeUnit.NANOSECONDS, h -> h.getValueAtPercentile(phi * 100.0))
+                .tags(tags.and("phi", Double.toString(phi)))
+                .register(registry);
+    }
+}
@@ -19,7 +19,9 @@ package org.spring.ext.task;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -31,5 +33,8 @@ import java.util.Map;
 @ConfigurationProperties("base.task")
 public class MultipleExecutorProperties {
     private Map<String, PoolConfig> pools = new LinkedHashMap<>();
+    private Map<String, GroupConfig> groups = new LinkedHashMap<>();
     private ShutdownConfig shutdown;
+    private boolean lazy;
+    private List<PropagatedContext> propagate = new ArrayList<>(List.of(PropagatedContext.REQUEST_ATTRIBUTES));
 }
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.GenericApplicationListener;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+import static org.spring.ext.task.MultipleExecutorSupport.threadPoolOf;
+
+/**
+ * Applies refreshed {@link MultipleExecutorProperties} to running executors, without a restart.
+ * <p>
+ * A pool's <code>coreSize</code>, <code>maxSize</code>, <code>keepAlive</code>, <code>allowCoreThreadTimeout</code>,
+ * <code>queueCapacity</code> and <code>rejectedExecutionHandler</code> apply to its running thread pool,
+ * or that of its workers, and to a {@link LazyTaskExecutor} once created. The queue capacity applies only
+ * to bounded queues backed by a {@link BoundedTaskQueue}. Changes to other settings are logged and
+ * take effect on restart. Pools added to configuration are created and registered as beans, while pools
+ * removed from it are unregistered and shut down once their queued tasks have run. Every changed pool is
+ * validated before any change is applied, so that an invalid configuration leaves all pools as they were.
+ * <p>
+ * Configuration is re-read by {@link #refresh()}, which runs on a Spring Cloud
+ * <code>EnvironmentChangeEvent</code> when Spring Cloud Context is present, or may be called directly.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class MultipleExecutorRefresher implements GenericApplicationListener {
+    /** The class names of events which trigger a refresh. */
+    public static final Set<String> REFRESH_EVENTS =
+            Set.of("org.springframework.cloud.context.environment.EnvironmentChangeEvent");
+
+    private final MultipleExecutorProperties properties;
+    private static final Set<String> STANDARD_POLICIES =
+            Set.of("AbortPolicy", "CallerRunsPolicy", "DiscardOldestPolicy", "DiscardPolicy");
+
+    private final Map<String, AsyncTaskExecutor> executors;
+    private final ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer;
+    private final ObjectProvider<TaskDecorator> taskDecorator;
+    private final ObjectProvider<PoolChangeListener> poolChangeListeners;
+    private final DefaultListableBeanFactory registry;
+    private final ApplicationContext applicationContext;
+    private final Map<String, PoolConfig> pools = new LinkedHashMap<>();
+
+    /**
+     * Creates a refresher for the given executors, as created from the given properties.
+     *
+     * @param properties Configuration properties from which the executors were created.
+     * @param executors The executor beans mapped by configured name, which is updated as pools are added or removed.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param poolChangeListeners Optionally provided listeners to pools being added or removed.
+     * @param registry Bean definition registry.
+     * @param applicationContext Eponymous application context.
+     */
+    public MultipleExecutorRefresher(
+            MultipleExecutorProperties properties,
+            Map<String, AsyncTaskExecutor> executors,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ObjectProvider<PoolChangeListener> poolChangeListeners,
+            DefaultListableBeanFactory registry,
+            ApplicationContext applicationContext) {
+        this.properties = properties;
+        this.executors = executors;
+        this.taskExecutorCustomizer = taskExecutorCustomizer;
+        this.taskDecorator = taskDecorator;
+        this.poolChangeListeners = poolChangeListeners;
+        this.registry = registry;
+        this.applicationContext = applicationContext;
+        // copied, as a configuration properties rebinder may update the bound pools in place
+        properties.getPools().forEach((poolName, poolConfig) -> pools.put(poolName, copyOf(poolConfig)));
+    }
+
+    @Override
+    public boolean supportsEventType(@NonNull ResolvableType eventType) {
+        Class<?> eventClass = eventType.resolve();
+        return eventClass != null && REFRESH_EVENTS.contains(eventClass.getName());
+    }
+
+    @Override
+    public void onApplicationEvent(@NonNull ApplicationEvent event) {
+        log.info("Refreshing executor pools on {}", event.getClass().getSimpleName());
+        try {
+            refresh();
+        }
+        catch (IllegalArgumentException ex) {
+            log.error("Keeping the previous executor pool configuration: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the pool configurations as last applied, at startup or by a refresh.
+     *
+     * @return a copy of the pool configurations mapped by configured name.
+     */
+    public synchronized Map<String, PoolConfig> getPoolConfigs() {
+        return new LinkedHashMap<>(pools);
+    }
+
+    /**
+     * Rebinds <code>base.task</code> properties from the environment and applies them to the executors.
+     *
+     * @return the names of the pools which were reconfigured, added or removed.
+     * @throws IllegalArgumentException if a changed pool is invalid, in which case no pool is changed.
+     */
+    public Set<String> refresh() {
+        MultipleExecutorProperties updated = Binder.get(applicationContext.getEnvironment())
+                .bind("base.task", MultipleExecutorProperties.class)
+                .orElseGet(MultipleExecutorProperties::new);
+        return refresh(updated);
+    }
+
+    /**
+     * Applies the given properties to the executors.
+     *
+     * @param updated The refreshed configuration properties.
+     * @return the names of the pools which were reconfigured, added or removed.
+     * @throws IllegalArgumentException if a changed pool is invalid, in which case no pool is changed.
+     */
+    public synchronized Set<String> refresh(MultipleExecutorProperties updated) {
+        updated.getPools().forEach((poolName, poolConfig) -> {
+            if (!poolConfig.equals(pools.get(poolName)))
+                validate(poolName, poolConfig);
+        });
+        Set<String> changed = new LinkedHashSet<>();
+        for (String poolName : new ArrayList<>(pools.keySet())) {
+            if (!updated.getPools().containsKey(poolName)) {
+                removePool(poolName);
+                changed.add(poolName);
+            }
+        }
+        for (Map.Entry<String, PoolConfig> entry : updated.getPools().entrySet()) {
+            String poolName = entry.getKey();
+            PoolConfig previous = pools.get(poolName);
+            if (entry.getValue().equals(previous))
+                continue;
+            if (previous == null)
+                addPool(poolName, entry.getValue(), updated);
+            else
+                reconfigurePool(poolName, previous, entry.getValue());
+            pools.put(poolName, copyOf(entry.getValue()));
+            changed.add(poolName);
+        }
+        if (!changed.isEmpty())
+            log.info("Refreshed executor pools: {}", changed);
+        return changed;
+    }
+
+    private void validate(String poolName, PoolConfig poolConfig) {
+        if (poolConfig.getType() != ExecutorType.VIRTUAL && poolConfig.getType() != ExecutorType.FORK_JOIN) {
+            Assert.isTrue(poolConfig.getCoreSize() >= 0 && poolConfig.getMaxSize() > 0
+                            && poolConfig.getCoreSize() <= poolConfig.getMaxSize(),
+                    () -> String.format("Pool %s needs 0 <= coreSize <= maxSize and a positive maxSize, not %d and %d",
+                            poolName, poolConfig.getCoreSize(), poolConfig.getMaxSize()));
+            Assert.isTrue(poolConfig.getQueueCapacity() >= 0,
+                    () -> String.format("Pool %s needs a non-negative queueCapacity", poolName));
+            Assert.isTrue(poolConfig.getKeepAlive() != null && !poolConfig.getKeepAlive().isNegative(),
+                    () -> String.format("Pool %s needs a non-negative keepAlive", poolName));
+        }
+        if (poolConfig.getOverflow() != null)
+            MultipleExecutorSupport.validateOverflow(poolName, poolConfig);
+        String policy = poolConfig.getRejectedExecutionHandler();
+        if (StringUtils.isNotBlank(policy) && !STANDARD_POLICIES.contains(policy))
+            Assert.isTrue(applicationContext.containsBean(policy)
+                            && applicationContext.isTypeMatch(policy, RejectedExecutionHandler.class),
+                    () -> String.format("Pool %s names unknown rejectedExecutionHandler %s", poolName, policy));
+    }
+
+    private void addPool(String poolName, PoolConfig poolConfig, MultipleExecutorProperties updated) {
+        if (poolConfig.getAdaptive() != null)
+            log.warn("Adaptive sizing applies to pools configured at startup, pool {} keeps a fixed size", poolName);
+        if (updated.getShutdown() == null)
+            updated.setShutdown(properties.getShutdown());
+        // pool groups are formed at startup, so an added pool is isolated
+        AsyncTaskExecutor executor = MultipleExecutorSupport.createTaskExecutor(poolName, poolConfig, updated, null,
+                taskExecutorCustomizer, taskDecorator, applicationContext);
+        registry.registerSingleton(poolName, executor);
+        executors.put(poolName, executor);
+        log.info("Added pool {}", poolName);
+        poolChangeListeners.orderedStream().forEach(listener -> listener.poolAdded(poolName, executor));
+    }
+
+    private void removePool(String poolName) {
+        AsyncTaskExecutor executor = executors.remove(poolName);
+        pools.remove(poolName);
+        if (registry.containsSingleton(poolName))
+            registry.destroySingleton(poolName);
+        if (executor == null)
+            return;
+        log.info("Removing pool {}, waiting for its queued tasks", poolName);
+        PoolTaskExecutor pool = threadPoolOf(executor);
+        if (pool != null)
+            pool.setWaitForTasksToCompleteOnShutdown(true);
+        if (executor instanceof DisposableBean disposable) {
+            try {
+                disposable.destroy();
+            }
+            catch (Exception ex) {
+                log.warn("Failed to shut down removed pool {}: {}", poolName, ex.toString());
+            }
+        }
+        poolChangeListeners.orderedStream().forEach(listener -> listener.poolRemoved(poolName, executor));
+    }
+
+    private void reconfigurePool(String poolName, PoolConfig previous, PoolConfig poolConfig) {
+        if (!withLiveSettings(poolConfig, previous).equals(previous))
+            log.warn("Pool {} has changed settings which apply on restart, only sizing, keepAlive, "
+                    + "queueCapacity and rejectedExecutionHandler are applied: {}", poolName, poolConfig);
+        AsyncTaskExecutor executor = executors.get(poolName);
+        if (executor instanceof LazyTaskExecutor lazy)
+            lazy.whenInitialized(pool -> reconfigure(poolName, previous, poolConfig, pool, false));
+        else if (threadPoolOf(executor) != null)
+            reconfigure(poolName, previous, poolConfig, threadPoolOf(executor),
+                    !(executor instanceof PoolTaskExecutor));
+    }
+
+    private void reconfigure(String poolName, PoolConfig previous, PoolConfig poolConfig, PoolTaskExecutor pool,
+                             boolean workers) {
+        log.info("Reconfiguring pool {}: coreSize={}, maxSize={}, keepAlive={}, queueCapacity={}, rejection={}",
+                poolName, poolConfig.getCoreSize(), poolConfig.getMaxSize(), poolConfig.getKeepAlive(),
+                poolConfig.getQueueCapacity(), poolConfig.getRejectedExecutionHandler());
+        if (poolConfig.getAdaptive() != null)
+            log.info("Adaptive sizing controls the size of pool {}", poolName);
+        // keep core <= max throughout, as the running pool rejects either change otherwise
+        else if (poolConfig.getMaxSize() >= pool.getCorePoolSize()) {
+            pool.setMaxPoolSize(poolConfig.getMaxSize());
+            pool.setCorePoolSize(poolConfig.getCoreSize());
+        }
+        else {
+            pool.setCorePoolSize(poolConfig.getCoreSize());
+            pool.setMaxPoolSize(poolConfig.getMaxSize());
+        }
+        pool.setKeepAliveSeconds((int) poolConfig.getKeepAlive().toSeconds());
+        pool.setAllowCoreThreadTimeOut(poolConfig.isAllowCoreThreadTimeout());
+        pool.getThreadPoolExecutor().allowCoreThreadTimeOut(poolConfig.isAllowCoreThreadTimeout());
+        if (previous.getQueueCapacity() != poolConfig.getQueueCapacity()
+                && !pool.resizeQueue(poolConfig.getQueueCapacity()))
+            log.warn("The queue of pool {} cannot be resized, queueCapacity applies on restart", poolName);
+        if (!Objects.equals(previous.getRejectedExecutionHandler(), poolConfig.getRejectedExecutionHandler())) {
+            // the workers of batching, striped and throttled pools always reject with AbortPolicy
+            if (workers)
+                MultipleExecutorSupport.abortOnRejection(poolName, poolConfig, pool);
+            else if (StringUtils.isNotBlank(poolConfig.getRejectedExecutionHandler()))
+                MultipleExecutorSupport.setRejectedExecutionHandler(
+                        pool, poolConfig.getRejectedExecutionHandler(), applicationContext);
+            else
+                pool.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        }
+    }
+
+    private static PoolConfig withLiveSettings(PoolConfig poolConfig, PoolConfig source) {
+        PoolConfig copy = copyOf(poolConfig);
+        copy.setCoreSize(source.getCoreSize());
+        copy.setMaxSize(source.getMaxSize());
+        copy.setKeepAlive(source.getKeepAlive());
+        copy.setAllowCoreThreadTimeout(source.isAllowCoreThreadTimeout());
+        copy.setQueueCapacity(source.getQueueCapacity());
+        copy.setRejectedExecutionHandler(source.getRejectedExecutionHandler());
+        return copy;
+    }
+
+    private static PoolConfig copyOf(PoolConfig poolConfig) {
+        PoolConfig copy = new PoolConfig();
+        BeanUtils.copyProperties(poolConfig, copy);
+        // nested configurations would otherwise still be shared with, and updated in place with, the bound pool
+        copy.setTaskDecorator(new ArrayList<>(poolConfig.getTaskDecorator()));
+        copy.setAdaptive(copyOf(poolConfig.getAdaptive(), AdaptiveConfig::new));
+        copy.setShedding(copyOf(poolConfig.getShedding(), SheddingConfig::new));
+        copy.setOverflow(copyOf(poolConfig.getOverflow(), OverflowConfig::new));
+        if (copy.getOverflow() != null)
+            copy.getOverflow().setAllowedClasses(new ArrayList<>(poolConfig.getOverflow().getAllowedClasses()));
+        copy.setWatchdog(copyOf(poolConfig.getWatchdog(), WatchdogConfig::new));
+        copy.setWarmUp(copyOf(poolConfig.getWarmUp(), WarmUpConfig::new));
+        copy.setBatch(copyOf(poolConfig.getBatch(), BatchConfig::new));
+        return copy;
+    }
+
+    @Nullable
+    private static <T> T copyOf(@Nullable T config, Supplier<T> factory) {
+        if (config == null)
+            return null;
+        T copy = factory.get();
+        BeanUtils.copyProperties(config, copy);
+        return copy;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.util.Assert;
+
+import java.util.Map;
+
+/**
+ * Opens {@link TaskScope task scopes} on configuration-defined executors, to fan tasks out to a pool
+ * and join their results without leaking work past the caller's timeout.
+ *
+ * @author Kevan Simpson
+ */
+public class MultipleExecutorScopes {
+    private final Map<String, AsyncTaskExecutor> executors;
+
+    /**
+     * Creates scopes over the given executors.
+     *
+     * @param executors The executor beans mapped by configured name.
+     */
+    public MultipleExecutorScopes(Map<String, AsyncTaskExecutor> executors) {
+        this.executors = executors;
+    }
+
+    /**
+     * Opens a scope running tasks on the named pool.
+     *
+     * @param poolName The name of the executor pool.
+     * @return a new task scope.
+     * @throws IllegalArgumentException if no pool has the given name.
+     */
+    public TaskScope scope(String poolName) {
+        AsyncTaskExecutor executor = executors.get(poolName);
+        Assert.notNull(executor, () -> "No executor pool named " + poolName);
+        return new TaskScope(executor);
+    }
+}
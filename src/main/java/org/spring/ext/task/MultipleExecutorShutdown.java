@@ -0,0 +1,217 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.spring.ext.task.MultipleExecutorSupport.threadPoolOf;
+
+/**
+ * Shuts configuration-defined executors down when the application context closes, phase by phase,
+ * within a single deadline shared by all pools.
+ * <p>
+ * Pools shut down in ascending order of their {@link PoolConfig#getShutdownPhase() shutdownPhase}, so that
+ * pools feeding others can drain into them first. All pools of a phase are shut down at once and drain
+ * in parallel, and the next phase begins once they have terminated. Pools which
+ * {@link PoolConfig#isWaitForTasksToCompleteShutdown() wait for tasks} run their queued and pending
+ * tasks, while others discard them, cancelling their futures, and interrupt running tasks.
+ * With {@link ShutdownConfig#isAwaitTermination() awaitTermination}, the
+ * {@link ShutdownConfig#getAwaitTerminationPeriod() awaitTerminationPeriod} is the deadline for all phases
+ * together, after which pools still draining are stopped. Otherwise, each phase is awaited for as long as
+ * its pools take to terminate, so that phases stay in order. Lazy pools which were never created are
+ * closed, so that tasks submitted during shutdown cannot create them.
+ * The number of queued or buffered tasks dropped by each pool is logged.
+ * <p>
+ * Stopping runs before the executors' own lifecycle, which would otherwise pause them with tasks queued.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class MultipleExecutorShutdown implements SmartLifecycle {
+    /** The lifecycle phase of this bean, stopping before the executors' own phase. */
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE;
+
+    private final ShutdownConfig shutdown;
+    private final Map<String, AsyncTaskExecutor> executors;
+    private final MultipleExecutorRefresher refresher;
+    private volatile boolean running;
+
+    /**
+     * Creates a shutdown coordinator for the given executors.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @param executors The executor beans mapped by configured name.
+     * @param refresher The refresher holding the applied pool configurations.
+     */
+    public MultipleExecutorShutdown(MultipleExecutorProperties properties, Map<String, AsyncTaskExecutor> executors,
+            MultipleExecutorRefresher refresher) {
+        this.shutdown = (properties.getShutdown() != null) ? properties.getShutdown() : new ShutdownConfig();
+        this.executors = executors;
+        this.refresher = refresher;
+    }
+
+    @Override
+    public void start() {
+        // executor beans are paused by their own lifecycle, which must stop after this one
+        executors.values().forEach(executor -> {
+            if (executor instanceof PoolTaskExecutor pool)
+                pool.setPhase(PHASE - 1);
+        });
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        if (running) {
+            running = false;
+            shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Shuts all executors down, phase by phase, within the configured deadline.
+     *
+     * @return the number of tasks dropped by each pool which dropped any, mapped by configured name.
+     */
+    public Map<String, Integer> shutdown() {
+        if (executors.isEmpty())
+            return Map.of();
+        long started = System.nanoTime();
+        Duration period = (shutdown.isAwaitTermination() && shutdown.getAwaitTerminationPeriod() != null)
+                ? shutdown.getAwaitTerminationPeriod() : Duration.ZERO;
+        long deadline = started + period.toNanos();
+        Map<String, PoolConfig> configs = refresher.getPoolConfigs();
+        Map<Integer, List<String>> phases = new TreeMap<>();
+        new ArrayList<>(executors.keySet()).forEach(poolName -> phases.computeIfAbsent(
+                phaseOf(configs.get(poolName)), phase -> new ArrayList<>()).add(poolName));
+
+        Map<String, Integer> dropped = new LinkedHashMap<>();
+        phases.forEach((phase, poolNames) -> {
+            log.info("Shutting down phase {} pools: {}", phase, poolNames);
+            Map<String, Drain> drains = new LinkedHashMap<>();
+            for (String poolName : poolNames) {
+                PoolConfig config = configs.get(poolName);
+                boolean graceful = config != null && config.isWaitForTasksToCompleteShutdown();
+                drains.put(poolName, new Drain(poolName, executors.get(poolName), graceful));
+            }
+            // every pool of the phase drains concurrently, so each waits for the remainder of the deadline
+            drains.forEach((poolName, drain) -> {
+                int count = drain.await(deadline, shutdown.isAwaitTermination());
+                if (count > 0)
+                    dropped.put(poolName, count);
+            });
+        });
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        if (dropped.isEmpty())
+            log.info("Shut down {} pools in {}ms without dropping tasks", executors.size(), elapsed);
+        else
+            log.warn("Shut down {} pools in {}ms, dropping {} tasks: {}", executors.size(), elapsed,
+                    dropped.values().stream().mapToInt(Integer::intValue).sum(), dropped);
+        return dropped;
+    }
+
+    private static int phaseOf(PoolConfig config) {
+        return (config != null) ? config.getShutdownPhase() : 0;
+    }
+
+    /** The shutdown of a single executor, counting the tasks it drops. */
+    private static final class Drain {
+        private final String poolName;
+        private final AsyncTaskExecutor executor;
+        private final PoolTaskExecutor pool;
+        private final ExecutorService service;
+        private int dropped;
+
+        Drain(String poolName, AsyncTaskExecutor executor, boolean graceful) {
+            this.poolName = poolName;
+            this.executor = executor;
+            if (executor instanceof LazyTaskExecutor lazy)
+                lazy.close();
+            if (executor instanceof BatchingTaskExecutor batching)
+                batching.flush();
+            this.pool = threadPoolOf(executor);
+            this.service = (pool != null) ? pool.getThreadPoolExecutor()
+                    : (executor instanceof ForkJoinTaskExecutor forkJoin) ? forkJoin.getForkJoinPool() : null;
+            if (service == null)
+                return;
+            if (!graceful)
+                stopNow();
+            // tasks waiting for a permit start before the worker pool shuts down
+            else if (executor instanceof ThrottledTaskExecutor throttled)
+                throttled.shutdownGracefully();
+            else
+                service.shutdown();
+        }
+
+        int await(long deadline, boolean enforced) {
+            if (service != null) {
+                // without a deadline, later phases still wait for this one to terminate
+                long timeout = enforced ? Math.max(0L, deadline - System.nanoTime()) : Long.MAX_VALUE;
+                try {
+                    if (!service.awaitTermination(timeout, TimeUnit.NANOSECONDS)) {
+                        log.warn("Pool {} did not terminate before the shutdown deadline, stopping it", poolName);
+                        stopNow();
+                    }
+                }
+                catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    stopNow();
+                }
+            }
+            return dropped;
+        }
+
+        private void stopNow() {
+            if (service instanceof ForkJoinPool forkJoin) {
+                dropped += (int) Math.min(Integer.MAX_VALUE,
+                        forkJoin.getQueuedSubmissionCount() + forkJoin.getQueuedTaskCount());
+                forkJoin.shutdownNow();
+            }
+            // futures of submitted tasks are cancelled, rather than left never to complete
+            else if (executor instanceof ThrottledTaskExecutor throttled)
+                dropped += throttled.shutdownNow();
+            // tasks left in lanes can no longer be scheduled once the workers stop
+            else if (executor instanceof StripedTaskExecutor striped)
+                dropped += striped.shutdownNow();
+            else
+                dropped += pool.shutdownNow().size();
+        }
+    }
+}
@@ -25,13 +25,23 @@ import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.core.task.support.CompositeTaskDecorator;
+import org.springframework.lang.Nullable;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.Assert;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Factory methods for creating {@link AsyncTaskExecutor} beans from {@link MultipleExecutorProperties} configuration.
@@ -65,29 +75,248 @@ public class MultipleExecutorSupport {
             DefaultListableBeanFactory registry,
             ApplicationContext applicationContext) {
 
-        Map<String, AsyncTaskExecutor> executorMap = new LinkedHashMap<>();
+        Map<String, PoolGroup> poolGroups = createPoolGroups(properties);
+        // synchronized, as a MultipleExecutorRefresher may add and remove pools
+        Map<String, AsyncTaskExecutor> executorMap = Collections.synchronizedMap(new LinkedHashMap<>());
         for (String poolName : properties.getPools().keySet()) {
-            PoolConfig poolConfig = properties.getPools().get(poolName);
-            log.info("Creating AsyncTaskExecutor {}: {}", poolName, poolConfig);
-            ThreadPoolTaskExecutorBuilder builder = newBuilder(poolName, poolConfig, properties.getShutdown());
-            taskExecutorCustomizer.orderedStream().forEach(builder::additionalCustomizers);
-            builder.taskDecorator(taskDecorator.getIfUnique());
-
-            ThreadPoolTaskExecutor pool = builder.build();
-            // configure properties that Spring Boot (afaik) does not
-            customizeExecutor(poolName, poolConfig, pool, applicationContext);
-            // create + register executor as bean
-            pool.initialize();
-            log.info("Registering initialized pool: {} -> {}",
-                    poolName, ToStringBuilder.reflectionToString(pool));
-            registry.registerSingleton(poolName, pool);
+            AsyncTaskExecutor executor = createTaskExecutor(poolName, properties.getPools().get(poolName),
+                    properties, poolGroups.get(poolName), taskExecutorCustomizer, taskDecorator, applicationContext);
+            // register executor as bean
+            registry.registerSingleton(poolName, executor);
             log.info("Registration for pool {} is complete!", poolName);
-            executorMap.put(poolName, pool);
+            executorMap.put(poolName, executor);
         }
 
         return executorMap;
     }
 
+    /**
+     * Creates a single {@link AsyncTaskExecutor} of the configured {@link ExecutorType}.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param properties Configuration properties for executor beans.
+     * @param poolGroup The group of pools sharing queued work, or <code>null</code> if the pool is isolated.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the executor, not yet registered as a bean.
+     */
+    static AsyncTaskExecutor createTaskExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            MultipleExecutorProperties properties,
+            PoolGroup poolGroup,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        log.info("Creating AsyncTaskExecutor {}: {}", poolName, poolConfig);
+        if (isThrottled(poolConfig) && poolConfig.getType() != ExecutorType.THREAD_POOL)
+            log.warn("Only {} pools are throttled, ignoring maxTasksPerSecond and maxConcurrentTasks of pool {}",
+                    ExecutorType.THREAD_POOL, poolName);
+        return switch (poolConfig.getType()) {
+            case VIRTUAL -> VirtualTaskExecutor.isSupported()
+                    ? createVirtualExecutor(poolName, poolConfig, taskDecorator, applicationContext)
+                    : createPoolExecutor(poolName, poolConfig, properties, poolGroup,
+                            taskExecutorCustomizer, taskDecorator, applicationContext);
+            case FORK_JOIN -> createForkJoinExecutor(poolName, poolConfig, taskDecorator, applicationContext);
+            case BATCHING -> createBatchingExecutor(poolName, poolConfig, properties.getShutdown(),
+                    taskExecutorCustomizer, taskDecorator, applicationContext);
+            case STRIPED -> createStripedExecutor(poolName, poolConfig, properties.getShutdown(),
+                    taskExecutorCustomizer, taskDecorator, applicationContext);
+            case THREAD_POOL -> isThrottled(poolConfig)
+                    ? createThrottledExecutor(poolName, poolConfig, properties.getShutdown(),
+                            taskExecutorCustomizer, taskDecorator, applicationContext)
+                    : createPoolExecutor(poolName, poolConfig, properties, poolGroup,
+                            taskExecutorCustomizer, taskDecorator, applicationContext);
+        };
+    }
+
+    /**
+     * Creates a {@link PoolTaskExecutor} from configuration, or a {@link LazyTaskExecutor}
+     * which creates it on first use if the pool, or else all pools, are configured as lazy.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param properties Configuration properties for executor beans.
+     * @param poolGroup The group of pools sharing queued work, or <code>null</code> if the pool is isolated.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the initialized or lazy executor.
+     */
+    static AsyncTaskExecutor createPoolExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            MultipleExecutorProperties properties,
+            PoolGroup poolGroup,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        boolean lazy = (poolConfig.getLazy() != null) ? poolConfig.getLazy() : properties.isLazy();
+        if (lazy && (poolConfig.getAdaptive() != null || poolConfig.getWarmUp() != null))
+            log.warn("Adaptive sizing and warm-up require an initialized pool, creating pool {} eagerly", poolName);
+        else if (lazy) {
+            log.info("Deferring creation of lazy pool {} until first use", poolName);
+            return new LazyTaskExecutor(poolName, stats -> createThreadPoolExecutor(poolName, poolConfig,
+                    properties.getShutdown(), poolGroup, taskExecutorCustomizer, taskDecorator, applicationContext, stats));
+        }
+        return createThreadPoolExecutor(poolName, poolConfig, properties.getShutdown(), poolGroup,
+                taskExecutorCustomizer, taskDecorator, applicationContext, new ExecutorStats());
+    }
+
+    /**
+     * Creates and initializes a single {@link PoolTaskExecutor} from configuration.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param shutdown The shutdown configuration and source of customization.
+     * @param poolGroup The group of pools sharing queued work, or <code>null</code> if the pool is isolated.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @param stats The stats to be recorded by the executor.
+     * @return the initialized executor.
+     */
+    static PoolTaskExecutor createThreadPoolExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            ShutdownConfig shutdown,
+            PoolGroup poolGroup,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext,
+            ExecutorStats stats) {
+
+        if (poolConfig.getType() == ExecutorType.VIRTUAL)
+            log.warn("Virtual threads require Java 21+, creating pool {} as {}", poolName, ExecutorType.THREAD_POOL);
+        if (poolConfig.getOverflow() != null)
+            validateOverflow(poolName, poolConfig);
+        ThreadPoolTaskExecutorBuilder builder = newBuilder(poolName, poolConfig, shutdown);
+        taskExecutorCustomizer.orderedStream().forEach(builder::additionalCustomizers);
+        builder = builder.taskDecorator(resolveTaskDecorator(poolConfig, taskDecorator, applicationContext));
+
+        PoolTaskExecutor pool = builder.configure(new PoolTaskExecutor(stats));
+        // configure properties that Spring Boot (afaik) does not
+        customizeExecutor(poolName, poolConfig, pool, applicationContext);
+        pool.setInstrumented(poolConfig.isInstrumented());
+        pool.setQueueType(poolConfig.getQueueType());
+        pool.setPriorityAging(poolConfig.getPriorityAging());
+        pool.setPoolGroup(poolGroup);
+        if (poolConfig.getShedding() != null)
+            pool.setLoadShedder(LoadShedder.of(poolConfig.getShedding()));
+        if (poolConfig.getOverflow() != null) {
+            // spilled tasks could only be decorated when replayed, in the context of the replaying thread
+            pool.setTaskDecorator(null);
+            pool.setOverflow(OverflowFile.of(poolName, poolConfig.getOverflow()));
+        }
+        pool.initialize();
+        if (poolConfig.getWarmUp() != null)
+            warmUp(poolName, poolConfig.getWarmUp(), pool, applicationContext);
+        log.info("Registering initialized pool: {}", poolName);
+        log.debug("Initialized pool {} -> {}", () -> poolName, () -> ToStringBuilder.reflectionToString(pool));
+        return pool;
+    }
+
+    /**
+     * Validates the overflow configuration of a pool, which does not apply the application's {@link TaskDecorator}
+     * and so may not list its own.
+     *
+     * @param poolName The name of the executor pool.
+     * @param poolConfig The pool configuration, with an overflow configuration.
+     * @throws IllegalArgumentException if the pool cannot overflow as configured.
+     */
+    static void validateOverflow(String poolName, PoolConfig poolConfig) {
+        OverflowConfig overflow = poolConfig.getOverflow();
+        Assert.isTrue(poolConfig.getQueueCapacity() > 0 && poolConfig.getQueueCapacity() < Integer.MAX_VALUE,
+                () -> String.format("Pool %s requires a bounded queueCapacity to overflow", poolName));
+        Assert.isTrue(poolConfig.getTaskDecorator().isEmpty(),
+                () -> String.format("Pool %s cannot overflow with a taskDecorator, spilled tasks are not decorated",
+                        poolName));
+        Assert.isTrue(StringUtils.isNotBlank(overflow.getDirectory()) && Path.of(overflow.getDirectory()).isAbsolute(),
+                () -> String.format("Pool %s requires an absolute overflow directory", poolName));
+        Assert.notEmpty(overflow.getAllowedClasses(),
+                () -> String.format("Pool %s requires the allowedClasses of its overflow tasks", poolName));
+    }
+
+    /**
+     * Creates the configured {@link PoolGroup groups} of pools sharing queued work.
+     * Only unthrottled {@link ExecutorType#THREAD_POOL thread-pool} pools join a group, each joining at most one.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @return the pool groups mapped by the names of their pools.
+     * @throws IllegalArgumentException if a group names an unknown pool, or a pool is in several groups.
+     */
+    static Map<String, PoolGroup> createPoolGroups(MultipleExecutorProperties properties) {
+        Map<String, PoolGroup> poolGroups = new LinkedHashMap<>();
+        properties.getGroups().forEach((groupName, groupConfig) -> {
+            PoolGroup group = PoolGroup.of(groupName, groupConfig);
+            for (String poolName : groupConfig.getPools()) {
+                PoolConfig poolConfig = properties.getPools().get(poolName);
+                Assert.notNull(poolConfig, () -> String.format("Group %s names unknown pool %s", groupName, poolName));
+                Assert.isTrue(!poolGroups.containsKey(poolName),
+                        () -> String.format("Pool %s cannot join both groups %s and %s",
+                                poolName, poolGroups.get(poolName).getName(), groupName));
+                if (poolConfig.getType() != ExecutorType.THREAD_POOL || isThrottled(poolConfig))
+                    log.warn("Only unthrottled {} pools share work, pool {} will not join group {}",
+                            ExecutorType.THREAD_POOL, poolName, groupName);
+                else
+                    poolGroups.put(poolName, group);
+            }
+            log.info("Created pool group {}: {}", groupName, groupConfig);
+        });
+        return poolGroups;
+    }
+
+    /**
+     * Creates a single {@link VirtualTaskExecutor} from configuration.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the virtual thread executor.
+     */
+    static VirtualTaskExecutor createVirtualExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        VirtualTaskExecutor executor = new VirtualTaskExecutor(
+                String.format("%s-task-", poolName), poolConfig.getConcurrencyLimit());
+        executor.setInstrumented(poolConfig.isInstrumented());
+        executor.setTaskDecorator(resolveTaskDecorator(poolConfig, taskDecorator, applicationContext));
+        log.info("Registering virtual pool: {} -> concurrencyLimit={}", poolName, poolConfig.getConcurrencyLimit());
+        return executor;
+    }
+
+    /**
+     * Creates a single {@link ForkJoinTaskExecutor} from configuration.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the fork-join executor.
+     */
+    static ForkJoinTaskExecutor createForkJoinExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        ForkJoinTaskExecutor executor = new ForkJoinTaskExecutor(
+                String.format("%s-task-", poolName), poolConfig.getParallelism(), poolConfig.isAsyncMode());
+        executor.setInstrumented(poolConfig.isInstrumented());
+        executor.setTaskDecorator(resolveTaskDecorator(poolConfig, taskDecorator, applicationContext));
+        log.info("Registering fork-join pool: {} -> parallelism={}, asyncMode={}",
+                poolName, poolConfig.getParallelism(), poolConfig.isAsyncMode());
+        return executor;
+    }
+
     /**
      * Customizes a single {@link ThreadPoolTaskExecutor} from configuration.
      *
@@ -108,14 +337,284 @@ public class MultipleExecutorSupport {
             log.debug("Setting thread factory: {}", poolConfig.getThreadFactory());
             executor.setThreadFactory(applicationContext.getBean(poolConfig.getThreadFactory(), ThreadFactory.class));
         }
-        if (StringUtils.isNotBlank(poolConfig.getTaskDecorator())) {
-            log.debug("Setting task decorator: {}", poolConfig.getTaskDecorator());
-            executor.setTaskDecorator(applicationContext.getBean(poolConfig.getTaskDecorator(), TaskDecorator.class));
-        }
         executor.setWaitForTasksToCompleteOnShutdown(poolConfig.isWaitForTasksToCompleteShutdown());
+        executor.setPrestartAllCoreThreads(poolConfig.isPrestartCoreThreads());
         setRejectedExecutionHandler(executor, poolConfig.getRejectedExecutionHandler(), applicationContext);
     }
 
+    /**
+     * Creates a single {@link BatchingTaskExecutor} from configuration, whose batches run on a thread pool
+     * configured by the same pool sizing and queue settings.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param shutdown The shutdown configuration and source of customization.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the batching executor.
+     */
+    static BatchingTaskExecutor createBatchingExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            ShutdownConfig shutdown,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        PoolTaskExecutor workers =
+                createWorkerPool(poolName, poolConfig, shutdown, taskExecutorCustomizer, applicationContext);
+        abortOnRejection(poolName, poolConfig, workers);
+        BatchConfig batch = poolConfig.getBatch();
+        TaskBatchProcessor<?> processor = StringUtils.isNotBlank(batch.getProcessor())
+                ? applicationContext.getBean(batch.getProcessor(), TaskBatchProcessor.class)
+                : null;
+        BatchingTaskExecutor executor =
+                new BatchingTaskExecutor(poolName, workers, batch.getSize(), batch.getMaxDelay(), processor);
+        executor.setInstrumented(poolConfig.isInstrumented());
+        executor.setTaskDecorator(resolveTaskDecorator(poolConfig, taskDecorator, applicationContext));
+        log.info("Registering batching pool: {} -> size={}, maxDelay={}, processor={}",
+                poolName, batch.getSize(), batch.getMaxDelay(), batch.getProcessor());
+        return executor;
+    }
+
+    /**
+     * Creates a single {@link StripedTaskExecutor} from configuration, whose lanes are drained by a thread pool
+     * configured by the same pool sizing and queue settings.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param shutdown The shutdown configuration and source of customization.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the striped executor.
+     */
+    static StripedTaskExecutor createStripedExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            ShutdownConfig shutdown,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        PoolTaskExecutor workers =
+                createWorkerPool(poolName, poolConfig, shutdown, taskExecutorCustomizer, applicationContext);
+        abortOnRejection(poolName, poolConfig, workers);
+        StripedTaskExecutor executor = new StripedTaskExecutor(workers, poolConfig.getStripes());
+        executor.setInstrumented(poolConfig.isInstrumented());
+        executor.setTaskDecorator(resolveTaskDecorator(poolConfig, taskDecorator, applicationContext));
+        log.info("Registering striped pool: {} -> stripes={}", poolName, poolConfig.getStripes());
+        return executor;
+    }
+
+    /**
+     * Creates a single {@link ThrottledTaskExecutor} from configuration, whose tasks run on a thread pool
+     * configured by the same pool sizing and queue settings once they hold a permit.
+     * Tasks wait for permits in a pending queue bounded by the pool's <code>queueCapacity</code>.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param shutdown The shutdown configuration and source of customization.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the throttled executor.
+     */
+    static ThrottledTaskExecutor createThrottledExecutor(
+            String poolName,
+            PoolConfig poolConfig,
+            ShutdownConfig shutdown,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        PoolTaskExecutor workers =
+                createWorkerPool(poolName, poolConfig, shutdown, taskExecutorCustomizer, applicationContext);
+        abortOnRejection(poolName, poolConfig, workers);
+        ThrottledTaskExecutor executor = new ThrottledTaskExecutor(poolName, workers,
+                poolConfig.getMaxTasksPerSecond(), poolConfig.getMaxConcurrentTasks(), poolConfig.getQueueCapacity());
+        executor.setInstrumented(poolConfig.isInstrumented());
+        executor.setTaskDecorator(resolveTaskDecorator(poolConfig, taskDecorator, applicationContext));
+        log.info("Registering throttled pool: {} -> maxTasksPerSecond={}, maxConcurrentTasks={}",
+                poolName, poolConfig.getMaxTasksPerSecond(), poolConfig.getMaxConcurrentTasks());
+        return executor;
+    }
+
+    /**
+     * Returns whether a pool limits the rate or concurrency of its tasks.
+     *
+     * @param poolConfig The pool configuration.
+     * @return <code>true</code> if <code>maxTasksPerSecond</code> or <code>maxConcurrentTasks</code> is set.
+     */
+    static boolean isThrottled(PoolConfig poolConfig) {
+        return poolConfig.getMaxTasksPerSecond() > 0.0 || poolConfig.getMaxConcurrentTasks() > 0;
+    }
+
+    /**
+     * Returns the thread pool running the tasks of an executor, being the executor itself,
+     * the pool of a {@link LazyTaskExecutor} once created, or the worker pool of a batching,
+     * striped or throttled executor.
+     *
+     * @param executor The executor.
+     * @return the thread pool, or <code>null</code> if the executor has none.
+     */
+    static PoolTaskExecutor threadPoolOf(AsyncTaskExecutor executor) {
+        if (executor instanceof PoolTaskExecutor pool)
+            return pool;
+        if (executor instanceof LazyTaskExecutor lazy)
+            return lazy.getIfInitialized();
+        if (executor instanceof BatchingTaskExecutor batching)
+            return batching.getWorkers();
+        if (executor instanceof StripedTaskExecutor striped)
+            return striped.getWorkers();
+        if (executor instanceof ThrottledTaskExecutor throttled)
+            return throttled.getWorkers();
+        return null;
+    }
+
+    /**
+     * Creates and initializes the worker pool of an executor which decorates and times tasks itself,
+     * so the pool applies neither.
+     *
+     * @param poolName The name of the executor pool to be created.
+     * @param poolConfig The pool configuration and source of customization.
+     * @param shutdown The shutdown configuration and source of customization.
+     * @param taskExecutorCustomizer Optionally provided executor customizer.
+     * @param applicationContext Eponymous application context.
+     * @return the initialized worker pool.
+     */
+    static PoolTaskExecutor createWorkerPool(
+            String poolName,
+            PoolConfig poolConfig,
+            ShutdownConfig shutdown,
+            ObjectProvider<ThreadPoolTaskExecutorCustomizer> taskExecutorCustomizer,
+            ApplicationContext applicationContext) {
+
+        ThreadPoolTaskExecutorBuilder builder = newBuilder(poolName, poolConfig, shutdown);
+        taskExecutorCustomizer.orderedStream().forEach(builder::additionalCustomizers);
+        PoolTaskExecutor workers = builder.build(PoolTaskExecutor.class);
+        customizeExecutor(poolName, poolConfig, workers, applicationContext);
+        workers.setTaskDecorator(null);
+        workers.setInstrumented(false);
+        workers.setQueueType(poolConfig.getQueueType());
+        workers.setPriorityAging(poolConfig.getPriorityAging());
+        workers.initialize();
+        return workers;
+    }
+
+    /**
+     * Runs warm-up tasks on an initialized pool and waits for them, so that thread creation and class loading
+     * are not paid for by its first real tasks. Warm-up tasks are not timed, so they are not counted in its stats.
+     *
+     * @param poolName The name of the executor pool to be warmed up.
+     * @param warmUp The warm-up configuration.
+     * @param pool The initialized executor.
+     * @param applicationContext Eponymous application context.
+     */
+    static void warmUp(
+            String poolName,
+            WarmUpConfig warmUp,
+            PoolTaskExecutor pool,
+            ApplicationContext applicationContext) {
+
+        Runnable task = StringUtils.isNotBlank(warmUp.getTask())
+                ? applicationContext.getBean(warmUp.getTask(), Runnable.class)
+                : () -> {};
+        log.info("Warming up pool {} with {} tasks", poolName, warmUp.getTasks());
+        CountDownLatch done = new CountDownLatch(warmUp.getTasks());
+        TimingDecorator.Untimed warmUpTask = () -> {
+            try {
+                task.run();
+            }
+            catch (RuntimeException ex) {
+                log.warn("Warm-up task of pool {} failed: {}", poolName, ex.toString());
+            }
+            finally {
+                done.countDown();
+            }
+        };
+        try {
+            for (int i = 0; i < warmUp.getTasks(); i++)
+                pool.execute(warmUpTask);
+            if (!done.await(warmUp.getTimeout().toNanos(), TimeUnit.NANOSECONDS))
+                log.warn("Warm-up of pool {} did not complete within {}", poolName, warmUp.getTimeout());
+        }
+        catch (TaskRejectedException ex) {
+            log.warn("Warm-up of pool {} did not complete: {}", poolName, ex.toString());
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Resolves the {@link TaskDecorator} of an executor, being the composed decorators named by the pool
+     * or else all decorator beans, in their order.
+     *
+     * @param poolConfig The pool configuration and source of customization.
+     * @param taskDecorator Optionally provided task decorator.
+     * @param applicationContext Eponymous application context.
+     * @return the task decorator, or <code>null</code> if there is none.
+     */
+    static TaskDecorator resolveTaskDecorator(
+            PoolConfig poolConfig,
+            ObjectProvider<TaskDecorator> taskDecorator,
+            ApplicationContext applicationContext) {
+
+        if (!poolConfig.getTaskDecorator().isEmpty())
+            return composeTaskDecorators(poolConfig.getTaskDecorator(), applicationContext);
+        return composeTaskDecorators(taskDecorator.orderedStream().toList());
+    }
+
+    /**
+     * Composes the named {@link TaskDecorator} beans into a single decorator, once per pool.
+     *
+     * @param beanNames The ordered names of the task decorator beans.
+     * @param applicationContext Eponymous application context.
+     * @return the composed decorator, or <code>null</code> if none is named.
+     * @see #composeTaskDecorators(List)
+     */
+    static TaskDecorator composeTaskDecorators(List<String> beanNames, ApplicationContext applicationContext) {
+        log.debug("Setting task decorators: {}", beanNames);
+        return composeTaskDecorators(beanNames.stream()
+                .map(name -> applicationContext.getBean(name, TaskDecorator.class))
+                .toList());
+    }
+
+    /**
+     * Composes task decorators into a single decorator, once per pool, the first being the innermost.
+     * Every {@link ContextAwareDecorator} is merged into one, in place of the first, so that all propagated
+     * contexts are captured and applied by a single wrapper per task. Other decorators each wrap the task
+     * in turn, applied by a {@link CompositeTaskDecorator} in a flat loop.
+     *
+     * @param decorators The ordered task decorators.
+     * @return the single decorator, a composite of all of them, or <code>null</code> if there are none.
+     */
+    @Nullable
+    static TaskDecorator composeTaskDecorators(List<TaskDecorator> decorators) {
+        List<TaskDecorator> composed = new ArrayList<>();
+        List<ContextPropagator<?>> propagators = new ArrayList<>();
+        int contextIndex = -1;
+        int contextCount = 0;
+        for (TaskDecorator decorator : decorators) {
+            if (decorator instanceof ContextAwareDecorator contextAware) {
+                if (contextCount++ == 0) {
+                    contextIndex = composed.size();
+                    composed.add(contextAware);
+                }
+                propagators.addAll(contextAware.getPropagators());
+            }
+            else
+                composed.add(decorator);
+        }
+        if (contextCount > 1)
+            composed.set(contextIndex, new ContextAwareDecorator(propagators));
+        if (composed.isEmpty())
+            return null;
+        return (composed.size() == 1) ? composed.get(0) : new CompositeTaskDecorator(composed);
+    }
+
     /**
      * Creates an executor builder using provided configuration.
      *
@@ -136,6 +635,24 @@ public class MultipleExecutorSupport {
                 .threadNamePrefix(String.format("%s-task-", name));
     }
 
+    /**
+     * Keeps the default {@link ThreadPoolExecutor.AbortPolicy} on a worker pool which runs internal tasks,
+     * such as batches, lane drains or tasks holding a permit, whose loss would go unnoticed by their submitters,
+     * or never return the permit, under another policy.
+     * Rejected tasks instead reach the submitter as a {@link TaskRejectedException}.
+     *
+     * @param poolName The name of the executor pool.
+     * @param poolConfig The pool configuration, whose rejection policy is ignored.
+     * @param workers The worker pool.
+     */
+    static void abortOnRejection(String poolName, PoolConfig poolConfig, PoolTaskExecutor workers) {
+        String policy = poolConfig.getRejectedExecutionHandler();
+        if (StringUtils.isNotBlank(policy) && !"AbortPolicy".equals(policy))
+            log.warn("Pool {} ignores rejectedExecutionHandler {}, its workers reject with AbortPolicy",
+                    poolName, policy);
+        workers.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    }
+
     /**
      * Configures the {@link RejectedExecutionHandler} for the given executor.
      *
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.Data;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Overflow configuration, whose presence makes a pool spill tasks beyond its queue capacity
+ * to an {@link OverflowFile} named after the pool in <code>directory</code>, of at most <code>maxFileSize</code>.
+ * The directory must be an absolute path, and only tasks of the <code>allowedClasses</code>, given as
+ * {@link java.io.ObjectInputFilter} patterns such as <code>com.example.tasks.**</code>, are read back.
+ *
+ * @author Kevan Simpson
+ */
+@Data
+public class OverflowConfig {
+    private String directory;
+    private DataSize maxFileSize = DataSize.ofMegabytes(64L);
+    private List<String> allowedClasses = new ArrayList<>();
+}
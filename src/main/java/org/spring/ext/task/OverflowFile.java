@@ -0,0 +1,303 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only file of {@link Serializable} tasks, memory-mapped so that spilling a task costs a copy
+ * into the page cache rather than a system call, and replayed in the order the tasks were appended.
+ * <p>
+ * The file starts with the offset of the first task not yet replayed, followed by each task as its
+ * length and serialized form. The length is written last, so a task appended when the process dies
+ * is either complete or absent, and tasks not yet replayed are recovered when the file is reopened,
+ * e.g. on restart. Once every task has been replayed the file is cleared and appends start over.
+ * Tasks still reside in the page cache until the OS writes them out, surviving the process but not the host.
+ * The file is locked while open, as it may only be used by a single pool.
+ * <p>
+ * Tasks are read back through an {@link ObjectInputFilter}, so that a file written by another process
+ * cannot make the pool instantiate arbitrary classes. Tasks of other classes are discarded.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class OverflowFile {
+    // the offset of the first task not yet replayed
+    private static final int HEADER = Integer.BYTES;
+    private static final int LENGTH = Integer.BYTES;
+    private static final byte[] ZEROS = new byte[8192];
+    // the JDK types tasks commonly hold, and serializable lambdas
+    private static final List<String> JDK_CLASSES = List.of(
+            "java.lang.*", "java.util.*", "java.time.*", "java.math.*", "java.lang.invoke.SerializedLambda");
+
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final ObjectInputFilter filter;
+    private final int capacity;
+    private int head;
+    private int tail;
+    private volatile int size;
+    private Runnable next;
+    private volatile boolean closed;
+
+    /**
+     * Opens the given file, recovering any tasks not yet replayed.
+     *
+     * @param path The file holding spilled tasks, created with its directory if absent.
+     * @param maxFileSize The size of the file, larger sizes holding more tasks.
+     * @param filter The filter of the classes which tasks are read back as.
+     * @throws IllegalStateException if the file cannot be opened, or is locked by another pool or process.
+     */
+    public OverflowFile(Path path, long maxFileSize, ObjectInputFilter filter) {
+        Assert.isTrue(maxFileSize > HEADER + LENGTH && maxFileSize <= Integer.MAX_VALUE,
+                "An overflow file must be larger than 8 bytes and at most 2GB");
+        this.path = path;
+        this.filter = filter;
+        try {
+            Path directory = path.toAbsolutePath().getParent();
+            if (directory != null)
+                Files.createDirectories(directory);
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock lock = tryLock(channel);
+            if (lock == null) {
+                channel.close();
+                throw new IllegalStateException("Overflow file " + path + " is in use");
+            }
+            // keep tasks spilled to a larger file before its size was reduced
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0L, Math.max(channel.size(), maxFileSize));
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Cannot open overflow file " + path, ex);
+        }
+        this.capacity = buffer.capacity();
+        recover();
+    }
+
+    /**
+     * Opens the overflow file of a pool from configuration.
+     *
+     * @param poolName The name of the pool, naming its file.
+     * @param config The overflow configuration.
+     * @return the overflow file.
+     */
+    public static OverflowFile of(String poolName, OverflowConfig config) {
+        return new OverflowFile(Path.of(config.getDirectory(), poolName + ".overflow"),
+                config.getMaxFileSize().toBytes(), filterOf(config.getAllowedClasses()));
+    }
+
+    /**
+     * Creates a filter which only allows the given classes, besides common JDK types, to be read back.
+     *
+     * @param allowedClasses The {@link ObjectInputFilter} patterns of the allowed classes,
+     *                       e.g. <code>com.example.*</code>.
+     * @return the filter.
+     */
+    public static ObjectInputFilter filterOf(List<String> allowedClasses) {
+        List<String> patterns = new ArrayList<>(allowedClasses);
+        patterns.addAll(JDK_CLASSES);
+        patterns.add("!*");
+        return ObjectInputFilter.Config.createFilter(String.join(";", patterns));
+    }
+
+    /**
+     * Appends a task to the file, if it can be serialized and the file has room for it.
+     *
+     * @param task The task to append.
+     * @return <code>true</code> if the task was appended, or <code>false</code> if it was refused.
+     */
+    public boolean append(Runnable task) {
+        byte[] bytes = serialize(task);
+        if (bytes == null)
+            return false;
+        synchronized (this) {
+            if (closed || tail + LENGTH + bytes.length > capacity)
+                return false;
+            buffer.put(tail + LENGTH, bytes);
+            buffer.putInt(tail, bytes.length);
+            tail += LENGTH + bytes.length;
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * Returns the first task not yet replayed, without removing it. Tasks which can no longer be read,
+     * e.g. because their class has changed, are logged and discarded.
+     *
+     * @return the next task to replay, or <code>null</code> if there is none.
+     */
+    @Nullable
+    public synchronized Runnable peek() {
+        while (next == null && size > 0 && !closed) {
+            byte[] bytes = new byte[buffer.getInt(head)];
+            buffer.get(head + LENGTH, bytes);
+            next = deserialize(bytes);
+            if (next == null)
+                advance();
+        }
+        return next;
+    }
+
+    /**
+     * Removes the first task, once it has been replayed.
+     */
+    public synchronized void remove() {
+        if (size > 0 && !closed) {
+            next = null;
+            advance();
+        }
+    }
+
+    /**
+     * Returns the number of tasks not yet replayed.
+     *
+     * @return the number of spilled tasks.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether there is no task to replay, because every spilled task has been replayed or the file is closed.
+     *
+     * @return <code>true</code> if no task is waiting to be replayed.
+     */
+    public boolean isEmpty() {
+        return size == 0 || closed;
+    }
+
+    /**
+     * Returns the file holding spilled tasks.
+     *
+     * @return the file path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Writes spilled tasks to disk and releases the file, keeping any tasks not yet replayed for when it is reopened.
+     */
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        buffer.force();
+        try {
+            channel.close();
+        }
+        catch (IOException ex) {
+            log.warn("Cannot close overflow file {}", path, ex);
+        }
+        if (size > 0)
+            log.info("Closed overflow file {} with {} tasks to replay", path, size);
+    }
+
+    private void recover() {
+        int offset = buffer.getInt(0);
+        head = (offset >= HEADER && offset <= capacity) ? offset : HEADER;
+        tail = head;
+        int length;
+        while (tail + LENGTH <= capacity
+                && (length = buffer.getInt(tail)) > 0 && length <= capacity - tail - LENGTH) {
+            tail += LENGTH + length;
+            size++;
+        }
+        if (size > 0)
+            log.info("Recovered {} tasks spilled to {}", size, path);
+        else
+            clear();
+    }
+
+    private void advance() {
+        head += LENGTH + buffer.getInt(head);
+        size--;
+        if (size == 0)
+            clear();
+        else
+            buffer.putInt(0, head);
+    }
+
+    private void clear() {
+        // zeroed before moving the head, so that a restart in between finds no tasks rather than replayed ones
+        for (int offset = HEADER; offset < tail; offset += ZEROS.length)
+            buffer.put(offset, ZEROS, 0, Math.min(ZEROS.length, tail - offset));
+        head = HEADER;
+        tail = HEADER;
+        buffer.putInt(0, HEADER);
+    }
+
+    @Nullable
+    private byte[] serialize(Runnable task) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(task);
+        }
+        catch (IOException ex) {
+            log.warn("Cannot spill task {} to {}", task, path, ex);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nullable
+    private Runnable deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(
+                new ByteArrayInputStream(bytes), ClassUtils.getDefaultClassLoader())) {
+            in.setObjectInputFilter(filter);
+            return (Runnable) in.readObject();
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException ex) {
+            log.error("Discarding task spilled to {} which cannot be read", path, ex);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        }
+        catch (OverlappingFileLockException ex) {
+            // already locked within this JVM
+            return null;
+        }
+    }
+}
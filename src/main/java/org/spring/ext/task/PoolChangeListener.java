@@ -0,0 +1,45 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+
+/**
+ * Notified by {@link MultipleExecutorRefresher} when refreshed configuration adds or removes an executor pool,
+ * so that beans holding per-pool state, such as {@link MultipleExecutorMetrics}, can follow.
+ *
+ * @author Kevan Simpson
+ */
+public interface PoolChangeListener {
+    /**
+     * Called once a new pool has been created and registered.
+     *
+     * @param poolName The name of the executor pool.
+     * @param executor The new executor.
+     */
+    default void poolAdded(String poolName, AsyncTaskExecutor executor) {
+    }
+
+    /**
+     * Called once a removed pool has been shut down and unregistered.
+     *
+     * @param poolName The name of the executor pool.
+     * @param executor The removed executor.
+     */
+    default void poolRemoved(String poolName, AsyncTaskExecutor executor) {
+    }
+}
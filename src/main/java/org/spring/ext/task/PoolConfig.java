@@ -19,6 +19,8 @@ package org.spring.ext.task;
 import lombok.Data;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Executor pool configuration properties, analogous to
@@ -29,15 +31,35 @@ import java.time.Duration;
  */
 @Data
 public class PoolConfig {
+    private ExecutorType type = ExecutorType.THREAD_POOL;
+    private QueueType queueType = QueueType.LINKED;
+    private Duration priorityAging;
     private int queueCapacity = Integer.MAX_VALUE;
     private int coreSize = 8;
     private int maxSize = Integer.MAX_VALUE;
     private boolean allowCoreThreadTimeout = true;
     private Duration keepAlive = Duration.ofSeconds(60L);
+    private boolean prestartCoreThreads;
 
     private String threadFactory;
     private String threadGroupName;
-    private String taskDecorator;
+    private List<String> taskDecorator = new ArrayList<>();
     private boolean waitForTasksToCompleteShutdown;
+    private int shutdownPhase;
     private String rejectedExecutionHandler;
+    private boolean instrumented = true;
+    private Boolean lazy;
+
+    private int concurrencyLimit = VirtualTaskExecutor.UNBOUNDED_CONCURRENCY;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean asyncMode;
+    private AdaptiveConfig adaptive;
+    private SheddingConfig shedding;
+    private OverflowConfig overflow;
+    private WatchdogConfig watchdog;
+    private double maxTasksPerSecond;
+    private int maxConcurrentTasks;
+    private WarmUpConfig warmUp;
+    private BatchConfig batch = new BatchConfig();
+    private int stripes = 64;
 }
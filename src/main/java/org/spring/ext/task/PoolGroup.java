@@ -0,0 +1,149 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A group of {@link PoolTaskExecutor} pools which share their queued work, so that threads idle in one pool
+ * run tasks queued by an overloaded sibling instead of waiting for their own.
+ * <p>
+ * Each pool's work queue joins the group as a {@link StealingTaskQueue}. Once a pool queues a task which its
+ * own threads are not waiting for, and its queue holds at least <code>stealThreshold</code> tasks, the group
+ * wakes an idle thread of a sibling, which takes the oldest task of the sibling with the longest queue,
+ * provided no more than <code>maxBorrowedThreads</code> of its pool's threads are running tasks of siblings.
+ * Tasks are decorated, timed and rejected by the pool they were submitted to, so each pool keeps its own
+ * rejection policy and metrics.
+ *
+ * @author Kevan Simpson
+ */
+public class PoolGroup {
+    private final String name;
+    private final int stealThreshold;
+    private final int maxBorrowedThreads;
+    private final List<StealingTaskQueue> members = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates an empty group.
+     *
+     * @param name The name of the group.
+     * @param stealThreshold The minimum number of tasks queued by a sibling before they are stolen.
+     * @param maxBorrowedThreads The maximum number of each pool's threads running tasks of siblings.
+     */
+    public PoolGroup(String name, int stealThreshold, int maxBorrowedThreads) {
+        this.name = name;
+        this.stealThreshold = Math.max(1, stealThreshold);
+        this.maxBorrowedThreads = maxBorrowedThreads;
+    }
+
+    /**
+     * Creates an empty group from configuration.
+     *
+     * @param name The name of the group.
+     * @param config The group configuration.
+     * @return the pool group.
+     */
+    public static PoolGroup of(String name, GroupConfig config) {
+        return new PoolGroup(name, config.getStealThreshold(), config.getMaxBorrowedThreads());
+    }
+
+    /**
+     * Adds a pool's work queue to the group.
+     *
+     * @param queue The pool's own work queue.
+     * @return the queue to be used by the pool.
+     */
+    public StealingTaskQueue join(BlockingQueue<Runnable> queue) {
+        StealingTaskQueue member = new StealingTaskQueue(queue, this);
+        members.add(member);
+        return member;
+    }
+
+    /**
+     * Removes a pool's work queue from the group, e.g. once the pool is shut down,
+     * so that siblings no longer check it.
+     *
+     * @param member The queue returned when the pool joined.
+     */
+    public void leave(StealingTaskQueue member) {
+        members.remove(member);
+    }
+
+    /** @return the number of pools in the group. */
+    public int getPoolCount() {
+        return members.size();
+    }
+
+    /** @return the name of the group. */
+    public String getName() {
+        return name;
+    }
+
+    /** @return the maximum number of each pool's threads running tasks of siblings. */
+    public int getMaxBorrowedThreads() {
+        return maxBorrowedThreads;
+    }
+
+    /**
+     * Wakes an idle thread of a sibling to steal from a pool's queue, if it holds enough tasks.
+     *
+     * @param victim The queue of the pool which queued a task.
+     */
+    void signalSiblings(StealingTaskQueue victim) {
+        if (victim.size() < stealThreshold)
+            return;
+        for (StealingTaskQueue member : members) {
+            if (member != victim && member.wake(true))
+                return;
+        }
+    }
+
+    /**
+     * Returns whether a sibling holds enough queued tasks to be stolen.
+     *
+     * @param thief The queue of the pool whose thread is idle.
+     * @return <code>true</code> if a task can be stolen.
+     */
+    boolean canSteal(StealingTaskQueue thief) {
+        for (StealingTaskQueue member : members) {
+            if (member != thief && member.size() >= stealThreshold)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Takes a task from the sibling with the longest queue, if any is long enough.
+     *
+     * @param thief The queue of the pool whose thread is idle.
+     * @return the stolen task, or <code>null</code> if there is none.
+     */
+    Runnable steal(StealingTaskQueue thief) {
+        StealingTaskQueue victim = null;
+        int longest = stealThreshold - 1;
+        for (StealingTaskQueue member : members) {
+            int size;
+            if (member != thief && (size = member.size()) > longest) {
+                victim = member;
+                longest = size;
+            }
+        }
+        return (victim != null) ? victim.getQueue().poll() : null;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Periodically resizes a {@link PoolTaskExecutor} from its {@link ExecutorStats}, using Little's law.
+ * <p>
+ * Each interval, the arrival rate (tasks started plus queue growth) is multiplied by the mean execution
+ * time to estimate the number of busy threads needed, to which the threads needed to drain the current
+ * backlog within one interval are added, plus {@link AdaptiveConfig#getHeadroom() headroom}.
+ * The core pool size grows to the estimate immediately but shrinks by at most a quarter per interval,
+ * always within the configured bounds. The maximum pool size is raised with the core size when needed,
+ * and lowered again as it shrinks, but never below the pool's configured maximum.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class PoolSizeController implements Runnable {
+    private final String poolName;
+    private final PoolTaskExecutor executor;
+    private final AdaptiveConfig config;
+    private final int configuredMaxSize;
+
+    private long lastNanos;
+    private long lastStarted;
+    private long lastExecuted;
+    private long lastExecutedNanos;
+    private int lastQueued;
+    private double meanExecutionNanos;
+
+    /**
+     * Creates a controller for a single pool.
+     *
+     * @param poolName The name of the executor pool.
+     * @param executor The instrumented executor to resize.
+     * @param config The adaptive sizing bounds.
+     */
+    public PoolSizeController(String poolName, PoolTaskExecutor executor, AdaptiveConfig config) {
+        this.poolName = poolName;
+        this.executor = executor;
+        this.config = config;
+        this.configuredMaxSize = executor.getMaxPoolSize();
+        ExecutorStats stats = executor.getStats();
+        this.lastNanos = System.nanoTime();
+        this.lastStarted = stats.getQueuedCount();
+        this.lastExecuted = stats.getExecutedCount();
+        this.lastExecutedNanos = stats.getExecutedNanos();
+        this.lastQueued = executor.getQueueSize();
+    }
+
+    @Override
+    public void run() {
+        try {
+            adjust(System.nanoTime());
+        }
+        catch (RuntimeException ex) {
+            log.warn("Failed to resize pool {}", poolName, ex);
+        }
+    }
+
+    /**
+     * Resizes the pool from the statistics recorded since the previous adjustment.
+     *
+     * @param now The current {@link System#nanoTime() time}.
+     * @return the new core pool size.
+     */
+    int adjust(long now) {
+        ExecutorStats stats = executor.getStats();
+        long started = stats.getQueuedCount();
+        long executed = stats.getExecutedCount();
+        long executedNanos = stats.getExecutedNanos();
+        int queued = executor.getQueueSize();
+        int current = executor.getCorePoolSize();
+        long elapsed = now - lastNanos;
+        if (elapsed <= 0L)
+            return current;
+
+        if (executed > lastExecuted)
+            meanExecutionNanos = (double) (executedNanos - lastExecutedNanos) / (executed - lastExecuted);
+        double arrivalRate = (double) Math.max(0L, started - lastStarted + queued - lastQueued) / elapsed;
+        double busy = arrivalRate * meanExecutionNanos;
+        double backlog = queued * meanExecutionNanos / config.getInterval().toNanos();
+        int target = (int) Math.ceil((busy + backlog) * (1.0 + config.getHeadroom()));
+        if (target < current)
+            target = Math.max(target, current - Math.max(1, current / 4));
+        target = Math.max(config.getMinSize(), Math.min(config.getMaxSize(), target));
+
+        if (target != current) {
+            log.debug("Resizing pool {} from {} to {} threads", poolName, current, target);
+            resize(target);
+        }
+        lastNanos = now;
+        lastStarted = started;
+        lastExecuted = executed;
+        lastExecutedNanos = executedNanos;
+        lastQueued = queued;
+        return target;
+    }
+
+    private void resize(int coreSize) {
+        // ThreadPoolExecutor rejects a core size above the maximum, so raise it first and lower it last
+        int maxSize = Math.max(coreSize, configuredMaxSize);
+        if (maxSize > executor.getMaxPoolSize())
+            executor.setMaxPoolSize(maxSize);
+        executor.setCorePoolSize(coreSize);
+        if (maxSize < executor.getMaxPoolSize())
+            executor.setMaxPoolSize(maxSize);
+    }
+}
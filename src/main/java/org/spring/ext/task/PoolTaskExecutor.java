@@ -0,0 +1,555 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.util.Assert;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ThreadPoolTaskExecutor} which records {@link ExecutorStats} for its tasks.
+ * Rejections are always counted, while queue and execution times are recorded
+ * by a {@link TimingDecorator} wrapping any configured {@link TaskDecorator}.
+ * The work queue is created according to its {@link QueueType}, and tasks submitted as {@link Prioritized}
+ * keep their priority for a {@link QueueType#PRIORITY priority} queue. A pool in a {@link PoolGroup}
+ * runs tasks queued by its siblings while idle, and a {@link LoadShedder} rejects tasks while the queue stands.
+ * The rejection policy and the capacity of a bounded {@link BoundedTaskQueue} may be changed while running.
+ * <p>
+ * With an {@link OverflowFile}, {@link Serializable} tasks which the pool cannot accept are spilled to the file
+ * rather than rejected, and later ones follow them until every spilled task has been replayed, in order,
+ * as running tasks complete. Tasks the file refuses, or which are not serializable, are rejected as usual.
+ * Tasks of a pool with an overflow file are not decorated, since spilled tasks could only be decorated
+ * when replayed, and on shutdown tasks still spilled are kept in the file rather than moved to the queue.
+ *
+ * @author Kevan Simpson
+ */
+public class PoolTaskExecutor extends ThreadPoolTaskExecutor implements InstrumentedExecutor {
+    private final ExecutorStats stats;
+    private boolean instrumented = true;
+    private QueueType queueType = QueueType.LINKED;
+    private TaskDecorator taskDecorator;
+    private Duration priorityAging;
+    private PoolGroup poolGroup;
+    private StealingTaskQueue groupQueue;
+    private LoadShedder loadShedder;
+    private OverflowFile overflow;
+    private volatile boolean waitForTasks;
+    private volatile RejectedExecutionHandler rejectionPolicy = new ThreadPoolExecutor.AbortPolicy();
+    private volatile BlockingQueue<Runnable> workQueue;
+    private final ThreadLocal<Boolean> trying = new ThreadLocal<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock replaying = new ReentrantLock();
+    private final AtomicBoolean replayRequested = new AtomicBoolean();
+
+    /**
+     * Creates an executor with its own {@link ExecutorStats}.
+     */
+    public PoolTaskExecutor() {
+        this(new ExecutorStats());
+    }
+
+    /**
+     * Creates an executor recording into the given {@link ExecutorStats}.
+     *
+     * @param stats The stats to record, e.g. those of a {@link LazyTaskExecutor}.
+     */
+    public PoolTaskExecutor(ExecutorStats stats) {
+        this.stats = stats;
+    }
+
+    /**
+     * Specifies whether queue and execution times are recorded, defaults to <code>true</code>.
+     *
+     * @param instrumented The flag to record task timings.
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
+
+    /**
+     * Specifies the kind of work queue, defaults to {@link QueueType#LINKED}.
+     *
+     * @param queueType The kind of work queue.
+     */
+    public void setQueueType(QueueType queueType) {
+        this.queueType = queueType;
+    }
+
+    @Override
+    public void setTaskDecorator(@Nullable TaskDecorator taskDecorator) {
+        // applied in initializeExecutor, once instrumentation is known
+        this.taskDecorator = taskDecorator;
+    }
+
+    @Override
+    public void setWaitForTasksToCompleteOnShutdown(boolean waitForJobsToCompleteOnShutdown) {
+        super.setWaitForTasksToCompleteOnShutdown(waitForJobsToCompleteOnShutdown);
+        this.waitForTasks = waitForJobsToCompleteOnShutdown;
+    }
+
+    /** @return whether queued tasks still run when the pool is shut down. */
+    public boolean isWaitForTasksToCompleteOnShutdown() {
+        return waitForTasks;
+    }
+
+    /**
+     * Specifies how long a task of a {@link QueueType#PRIORITY priority} queue waits to gain one level of priority,
+     * so that tasks of low priority are not starved. Defaults to <code>null</code>, for strict priorities.
+     *
+     * @param priorityAging The wait per level of priority.
+     */
+    public void setPriorityAging(@Nullable Duration priorityAging) {
+        this.priorityAging = priorityAging;
+    }
+
+    /**
+     * Specifies a group of pools sharing queued work, which the pool joins when initialized and leaves when shut down.
+     *
+     * @param poolGroup The group to join, or <code>null</code> for an isolated pool.
+     */
+    public void setPoolGroup(@Nullable PoolGroup poolGroup) {
+        this.poolGroup = poolGroup;
+    }
+
+    /**
+     * Specifies a {@link LoadShedder} deciding when to reject tasks before the queue is full.
+     *
+     * @param loadShedder The load shedder, or <code>null</code> to queue tasks up to the queue capacity.
+     */
+    public void setLoadShedder(@Nullable LoadShedder loadShedder) {
+        this.loadShedder = loadShedder;
+    }
+
+    /**
+     * Specifies an {@link OverflowFile} holding serializable tasks beyond the queue capacity,
+     * whose tasks are replayed once the pool is initialized.
+     *
+     * @param overflow The overflow file, or <code>null</code> to reject tasks beyond the queue capacity.
+     */
+    public void setOverflow(@Nullable OverflowFile overflow) {
+        this.overflow = overflow;
+    }
+
+    /**
+     * Returns the file holding tasks spilled beyond the queue capacity.
+     *
+     * @return the overflow file, or <code>null</code> if tasks are not spilled.
+     */
+    @Nullable
+    public OverflowFile getOverflow() {
+        return overflow;
+    }
+
+    @Override
+    public void setRejectedExecutionHandler(@Nullable RejectedExecutionHandler rejectedExecutionHandler) {
+        super.setRejectedExecutionHandler(rejectedExecutionHandler);
+        // also applies to a running pool, whose rejection handler delegates to the policy
+        this.rejectionPolicy = (rejectedExecutionHandler != null)
+                ? rejectedExecutionHandler : new ThreadPoolExecutor.AbortPolicy();
+    }
+
+    /**
+     * Changes the queue capacity, applying it to a running pool whose work queue is a {@link BoundedTaskQueue},
+     * i.e. a bounded {@link QueueType#LINKED linked}, {@link QueueType#TRANSFER transfer}
+     * or {@link QueueType#PRIORITY priority} queue. Other queues keep their capacity until the pool is recreated.
+     *
+     * @param queueCapacity The new maximum number of queued tasks.
+     * @return <code>true</code> if the capacity applies, or <code>false</code> if the running queue cannot be resized.
+     */
+    public boolean resizeQueue(int queueCapacity) {
+        setQueueCapacity(queueCapacity);
+        if (workQueue == null)
+            return true;
+        if (workQueue instanceof BoundedTaskQueue bounded && queueCapacity > 0 && queueCapacity < Integer.MAX_VALUE) {
+            bounded.setCapacity(queueCapacity);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns how long the task at the head of the queue has waited, being the oldest queued task
+     * unless the queue orders tasks by {@link QueueType#PRIORITY priority}.
+     *
+     * @return the wait of the head of the queue, or <code>null</code> if the queue is empty or tasks are not timed.
+     */
+    @Nullable
+    public Duration getOldestQueuedTaskAge() {
+        Runnable head = (workQueue != null) ? workQueue.peek() : null;
+        return (head instanceof QueuedTask queued)
+                ? Duration.ofNanos(System.nanoTime() - queued.getSubmittedNanos()) : null;
+    }
+
+    /**
+     * Returns whether the pool is shedding load because its queue is standing, rejecting a rising share
+     * of new tasks until it drains. Callers can use this as a backpressure signal, to degrade gracefully
+     * rather than submit tasks.
+     *
+     * @return <code>true</code> if new tasks may be rejected.
+     */
+    public boolean isOverloaded() {
+        return loadShedder != null && loadShedder.isDropping() && getQueueSize() > 0;
+    }
+
+    /**
+     * Executes a task if the pool can accept it, without throwing or applying the rejection policy otherwise,
+     * e.g. running the task on the caller with a <code>CallerRunsPolicy</code>. Refused tasks count as rejected.
+     *
+     * @param task The task to execute.
+     * @return <code>true</code> if the task was accepted, or <code>false</code> if it was refused.
+     */
+    public boolean tryExecute(@NonNull Runnable task) {
+        trying.set(Boolean.TRUE);
+        try {
+            execute(task);
+            return true;
+        }
+        catch (TaskRejectedException ex) {
+            return false;
+        }
+        finally {
+            trying.remove();
+        }
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        if (overflow == null || trying.get() != null || !(task instanceof Serializable)) {
+            super.execute(task);
+            return;
+        }
+        // once tasks have spilled, later ones follow them to keep their order
+        if (overflow.isEmpty() && offer(task))
+            return;
+        if (!overflow.append(task)) {
+            super.execute(task);
+            return;
+        }
+        replay();
+    }
+
+    @Override
+    public void shutdown() {
+        closeOverflow();
+        super.shutdown();
+        leaveGroup();
+    }
+
+    /**
+     * Stops the pool at once without waiting for it to terminate, interrupting running tasks and discarding
+     * queued ones, whose futures are cancelled as by a shutdown which does not wait for tasks to complete.
+     *
+     * @return the discarded tasks, as queued.
+     */
+    public List<Runnable> shutdownNow() {
+        closeOverflow();
+        List<Runnable> dropped = getThreadPoolExecutor().shutdownNow();
+        dropped.forEach(this::cancelRemainingTask);
+        leaveGroup();
+        return dropped;
+    }
+
+    @Override @NonNull
+    public Future<?> submit(@NonNull Runnable task) {
+        if (task instanceof Prioritized prioritized) {
+            FutureTask<Object> future = new FutureTask<>(task, null);
+            execute(PriorityTask.of(prioritized.getPriority(), future));
+            return future;
+        }
+        return super.submit(task);
+    }
+
+    @Override @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> task) {
+        if (task instanceof Prioritized prioritized) {
+            FutureTask<T> future = new FutureTask<>(task);
+            execute(PriorityTask.of(prioritized.getPriority(), future));
+            return future;
+        }
+        return super.submit(task);
+    }
+
+    @Override @NonNull
+    public CompletableFuture<Void> submitCompletable(@NonNull Runnable task) {
+        if (task instanceof Prioritized)
+            return submitCompletable(PriorityTask.callable(((Prioritized) task).getPriority(), () -> {
+                task.run();
+                return null;
+            }));
+        return super.submitCompletable(task);
+    }
+
+    @Override @NonNull
+    public <T> CompletableFuture<T> submitCompletable(@NonNull Callable<T> task) {
+        if (task instanceof Prioritized prioritized) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            execute(PriorityTask.of(prioritized.getPriority(), () -> {
+                try {
+                    future.complete(task.call());
+                }
+                catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            }));
+            return future;
+        }
+        return super.submitCompletable(task);
+    }
+
+    @Override @NonNull
+    protected ExecutorService initializeExecutor(
+            @NonNull ThreadFactory threadFactory, @NonNull RejectedExecutionHandler rejectedExecutionHandler) {
+
+        TaskDecorator decorator = instrumented ? new TimingDecorator(stats, taskDecorator) : taskDecorator;
+        if (overflow != null)
+            decorator = replaying(decorator);
+        if (loadShedder != null)
+            decorator = shedding(decorator);
+        super.setTaskDecorator((queueType == QueueType.PRIORITY) ? ranking(decorator) : decorator);
+        this.rejectionPolicy = rejectedExecutionHandler;
+        ExecutorService service = super.initializeExecutor(threadFactory, (task, executor) -> {
+            // lost a race with the pool reaching its maximum size
+            if (workQueue instanceof ScalingTaskQueue queue && !executor.isShutdown() && queue.force(task)) {
+                // forced past the group's queue, whose threads are woken as for any queued task
+                if (groupQueue != null)
+                    groupQueue.queued();
+                return;
+            }
+            // a task refused while replaying or spilling is not rejected
+            Boolean tried = trying.get();
+            if (!Boolean.FALSE.equals(tried))
+                stats.recordRejected();
+            if (tried != null)
+                throw new RejectedExecutionException("Executor " + executor + " cannot accept task " + task);
+            rejectionPolicy.rejectedExecution(task, executor);
+        });
+        // tasks spilled before a restart
+        if (overflow != null && !overflow.isEmpty())
+            replay();
+        return service;
+    }
+
+    @Override @NonNull
+    protected BlockingQueue<Runnable> createQueue(int queueCapacity) {
+        BlockingQueue<Runnable> queue = createWorkQueue(queueCapacity);
+        this.workQueue = queue;
+        if (poolGroup == null)
+            return queue;
+        this.groupQueue = poolGroup.join(queue);
+        return groupQueue;
+    }
+
+    private void leaveGroup() {
+        if (groupQueue != null)
+            poolGroup.leave(groupQueue);
+    }
+
+    private void closeOverflow() {
+        if (overflow == null)
+            return;
+        // waits for a replay in progress, after which spilled tasks stay in the file for the next start
+        replaying.lock();
+        try {
+            overflow.close();
+        }
+        finally {
+            replaying.unlock();
+        }
+    }
+
+    private BlockingQueue<Runnable> createWorkQueue(int queueCapacity) {
+        return switch (queueType) {
+            case LINKED -> (queueCapacity > 0)
+                    ? bounded(new LinkedBlockingQueue<>(), queueCapacity) : super.createQueue(queueCapacity);
+            case ARRAY -> {
+                Assert.isTrue(queueCapacity > 0 && queueCapacity < Integer.MAX_VALUE,
+                        "An array queue requires a bounded queueCapacity");
+                yield new ArrayBlockingQueue<>(queueCapacity);
+            }
+            case SYNCHRONOUS -> new SynchronousQueue<>();
+            case SCALE_THREADS_FIRST -> new ScalingTaskQueue(Math.max(1, queueCapacity), this);
+            case TRANSFER -> bounded(new LinkedTransferQueue<>(), queueCapacity);
+            case PRIORITY -> bounded(new PriorityBlockingQueue<>(), queueCapacity);
+        };
+    }
+
+    private static BlockingQueue<Runnable> bounded(BlockingQueue<Runnable> queue, int queueCapacity) {
+        return (queueCapacity < Integer.MAX_VALUE) ? new BoundedTaskQueue(queue, Math.max(1, queueCapacity)) : queue;
+    }
+
+    private boolean offer(Runnable task) {
+        trying.set(Boolean.FALSE);
+        try {
+            super.execute(task);
+            return true;
+        }
+        catch (TaskRejectedException ex) {
+            return false;
+        }
+        finally {
+            trying.remove();
+        }
+    }
+
+    private void replay() {
+        replayRequested.set(true);
+        // another thread replaying rechecks the request once done, so that it is not lost
+        while (replayRequested.get() && !overflow.isEmpty() && replaying.tryLock()) {
+            try {
+                replayRequested.set(false);
+                Runnable task;
+                // the pool is full again, a running task will request a replay once it completes
+                while ((task = overflow.peek()) != null && offer(task))
+                    overflow.remove();
+            }
+            finally {
+                replaying.unlock();
+            }
+        }
+    }
+
+    private TaskDecorator replaying(@Nullable TaskDecorator delegate) {
+        return task -> new ReplayingTask((delegate != null) ? delegate.decorate(task) : task);
+    }
+
+    private TaskDecorator shedding(@Nullable TaskDecorator delegate) {
+        return task -> {
+            long submitted = System.nanoTime();
+            if (getQueueSize() > 0 && loadShedder.shouldShed(submitted)) {
+                stats.recordRejected();
+                throw new RejectedExecutionException("Shedding load, rejecting task " + task);
+            }
+            Runnable decorated = (delegate != null) ? delegate.decorate(task) : task;
+            return new SheddingTask(submitted, decorated);
+        };
+    }
+
+    private TaskDecorator ranking(@Nullable TaskDecorator delegate) {
+        long agingNanos = (priorityAging != null) ? priorityAging.toNanos() : 0L;
+        return task -> {
+            int priority = (task instanceof Prioritized prioritized)
+                    ? prioritized.getPriority() : Prioritized.DEFAULT_PRIORITY;
+            // a task of higher priority ranks as if it had been queued earlier, by one aging interval per level
+            long submitted = System.nanoTime();
+            long rank = (agingNanos > 0L) ? submitted - priority * agingNanos : -priority;
+            Runnable decorated = (delegate != null) ? delegate.decorate(task) : task;
+            return new RankedTask(rank, sequence.getAndIncrement(), submitted, decorated);
+        };
+    }
+
+    /** A task replaying spilled tasks once it completes, having freed capacity for them. */
+    private final class ReplayingTask implements Runnable {
+        private final Runnable task;
+
+        ReplayingTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            }
+            finally {
+                if (!overflow.isEmpty())
+                    replay();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    /** A queued task reporting its time in the queue to the {@link LoadShedder}. */
+    private final class SheddingTask implements QueuedTask {
+        private final long submitted;
+        private final Runnable task;
+
+        SheddingTask(long submitted, Runnable task) {
+            this.submitted = submitted;
+            this.task = task;
+        }
+
+        @Override
+        public long getSubmittedNanos() {
+            return submitted;
+        }
+
+        @Override
+        public void run() {
+            loadShedder.onDequeue(System.nanoTime() - submitted);
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+
+    /** A queued task ordered by rank, then by submission order. */
+    private record RankedTask(long rank, long sequence, long submitted, Runnable task)
+            implements QueuedTask, Comparable<RankedTask> {
+        @Override
+        public long getSubmittedNanos() {
+            return submitted;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull RankedTask other) {
+            int byRank = Long.compare(rank, other.rank);
+            return (byRank != 0) ? byRank : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Assigns a priority to a task submitted to a pool with a {@link QueueType#PRIORITY priority} queue,
+ * e.g. <code>executor.execute(PriorityTask.of(10, task))</code> or
+ * <code>executor.submit(PriorityTask.callable(10, task))</code>.
+ *
+ * @author Kevan Simpson
+ */
+public class PriorityTask implements Runnable, Prioritized {
+    private final int priority;
+    private final Runnable task;
+
+    /**
+     * Creates a prioritized runnable.
+     *
+     * @param priority The task priority, higher values running first.
+     * @param task The task to run.
+     */
+    protected PriorityTask(int priority, Runnable task) {
+        this.priority = priority;
+        this.task = task;
+    }
+
+    /**
+     * Assigns a priority to a runnable.
+     *
+     * @param priority The task priority, higher values running first.
+     * @param task The task to run.
+     * @return the prioritized runnable.
+     */
+    public static PriorityTask of(int priority, Runnable task) {
+        return new PriorityTask(priority, task);
+    }
+
+    /**
+     * Assigns a priority to a callable.
+     *
+     * @param priority The task priority, higher values running first.
+     * @param task The task to call.
+     * @param <T> The type of the task's result.
+     * @return the prioritized callable.
+     */
+    public static <T> PriorityCallable<T> callable(int priority, Callable<T> task) {
+        return new PriorityCallable<>(priority, task);
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public void run() {
+        task.run();
+    }
+
+    /**
+     * A prioritized {@link Callable}.
+     *
+     * @param <T> The type of the task's result.
+     */
+    public static class PriorityCallable<T> implements Callable<T>, Prioritized {
+        private final int priority;
+        private final Callable<T> task;
+
+        PriorityCallable(int priority, Callable<T> task) {
+            this.priority = priority;
+            this.task = task;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+
+        @Override
+        public T call() throws Exception {
+            return task.call();
+        }
+    }
+}
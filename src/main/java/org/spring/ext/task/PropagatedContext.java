@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.util.ClassUtils;
+
+import java.util.function.Supplier;
+
+/**
+ * The thread-local contexts which {@link ContextAwareDecorator} can propagate to worker threads.
+ *
+ * @author Kevan Simpson
+ */
+public enum PropagatedContext {
+    /** Request attributes of {@link org.springframework.web.context.request.RequestContextHolder}. */
+    REQUEST_ATTRIBUTES(ContextPropagators::requestAttributes, null),
+    /** The Log4j2 {@link org.apache.logging.log4j.ThreadContext ThreadContext}, i.e. the MDC. */
+    MDC(ContextPropagators::mdc, null),
+    /** The locale context of {@link org.springframework.context.i18n.LocaleContextHolder}. */
+    LOCALE_CONTEXT(ContextPropagators::localeContext, null),
+    /** The Spring Security context, if Spring Security is present. */
+    SECURITY_CONTEXT(ContextPropagators::securityContext,
+            "org.springframework.security.core.context.SecurityContextHolder");
+
+    private final Supplier<ContextPropagator<?>> factory;
+    private final String requiredClass;
+
+    PropagatedContext(Supplier<ContextPropagator<?>> factory, String requiredClass) {
+        this.factory = factory;
+        this.requiredClass = requiredClass;
+    }
+
+    /**
+     * Creates a propagator for this context.
+     *
+     * @return the context propagator.
+     * @throws IllegalStateException if the context's library is not present.
+     */
+    public ContextPropagator<?> propagator() {
+        if (requiredClass != null && !ClassUtils.isPresent(requiredClass, getClass().getClassLoader()))
+            throw new IllegalStateException(name() + " propagation requires " + requiredClass);
+        return factory.get();
+    }
+}
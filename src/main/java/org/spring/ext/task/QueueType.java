@@ -0,0 +1,37 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+/**
+ * The kind of work queue backing a {@link PoolTaskExecutor}.
+ *
+ * @author Kevan Simpson
+ */
+public enum QueueType {
+    /** A {@link java.util.concurrent.LinkedBlockingQueue}, or direct handoff without capacity, as in Spring. */
+    LINKED,
+    /** A preallocated {@link java.util.concurrent.ArrayBlockingQueue}, requiring a bounded capacity. */
+    ARRAY,
+    /** A {@link java.util.concurrent.SynchronousQueue} handing each task directly to a thread. */
+    SYNCHRONOUS,
+    /** A {@link ScalingTaskQueue} which grows the pool to its maximum size before queueing. */
+    SCALE_THREADS_FIRST,
+    /** A lock-free {@link java.util.concurrent.LinkedTransferQueue}, bounded by a {@link BoundedTaskQueue}. */
+    TRANSFER,
+    /** A {@link java.util.concurrent.PriorityBlockingQueue} of {@link Prioritized} tasks, bounded by a {@link BoundedTaskQueue}. */
+    PRIORITY
+}
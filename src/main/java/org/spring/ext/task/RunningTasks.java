@@ -0,0 +1,148 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.Value;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks the task running on each thread of a pool, for sampling busy workers without a full thread dump.
+ * <p>
+ * Each worker owns a slot, registered once on its first task, which it alone writes as tasks start and
+ * finish, so that running a task touches no shared state. Sampling reads every slot, skipping idle ones,
+ * and drops the slots of threads which have since died. Pools which start a thread per task, such as
+ * virtual thread pools, instead hold a slot only while its task runs, adding it to a concurrent set when
+ * the task starts and removing it when the task finishes. A task run inline by a thread which is already
+ * running one, e.g. under a <code>CallerRunsPolicy</code>, is counted as part of the outer task.
+ *
+ * @author Kevan Simpson
+ */
+public class RunningTasks {
+    private final boolean threadPerTask;
+    private final Collection<Slot> slots;
+    private final ThreadLocal<Slot> slot = ThreadLocal.withInitial(this::register);
+
+    public RunningTasks() {
+        this(false);
+    }
+
+    /**
+     * @param threadPerTask Whether the pool starts a thread for each task, as virtual thread pools do.
+     */
+    public RunningTasks(boolean threadPerTask) {
+        this.threadPerTask = threadPerTask;
+        this.slots = threadPerTask ? ConcurrentHashMap.newKeySet() : new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Records a task starting on the current thread.
+     *
+     * @param task The task, as submitted.
+     * @return <code>true</code> if the task is tracked, or <code>false</code> if the thread is already running one.
+     */
+    public boolean started(Runnable task) {
+        Slot current = slot.get();
+        if (current.task != null)
+            return false;
+        current.startedNanos = System.nanoTime();
+        current.task = task;
+        if (threadPerTask)
+            slots.add(current);
+        return true;
+    }
+
+    /**
+     * Records the tracked task of the current thread finishing.
+     */
+    public void finished() {
+        Slot current = slot.get();
+        if (threadPerTask)
+            slots.remove(current);
+        current.task = null;
+    }
+
+    /**
+     * Samples the tasks currently running, without their stack traces, and drops the slots of dead threads.
+     *
+     * @return the running tasks, in no particular order.
+     */
+    public List<RunningTask> sample() {
+        List<RunningTask> running = new ArrayList<>();
+        boolean dead = false;
+        long now = System.nanoTime();
+        for (Slot each : slots) {
+            Runnable task = each.task;
+            if (task != null)
+                running.add(new RunningTask(each.thread, task, Duration.ofNanos(now - each.startedNanos)));
+            else if (!each.thread.isAlive())
+                dead = true;
+        }
+        if (dead)
+            slots.removeIf(each -> each.task == null && !each.thread.isAlive());
+        return running;
+    }
+
+    /**
+     * Interrupts the thread of a sampled task, unless the task has since finished.
+     *
+     * @param running The sampled task.
+     * @return <code>true</code> if the thread was interrupted.
+     */
+    public boolean interrupt(RunningTask running) {
+        for (Slot each : slots) {
+            if (each.thread == running.getThread() && each.task == running.getTask()) {
+                each.thread.interrupt();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A task running on a thread, as sampled.
+     */
+    @Value
+    public static class RunningTask {
+        Thread thread;
+        Runnable task;
+        Duration runningTime;
+    }
+
+    private Slot register() {
+        Slot registered = new Slot(Thread.currentThread());
+        if (!threadPerTask)
+            slots.add(registered);
+        return registered;
+    }
+
+    /** The task running on a single thread, or <code>null</code> while idle. */
+    private static final class Slot {
+        private final Thread thread;
+        private volatile long startedNanos;
+        private volatile Runnable task;
+
+        Slot(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.lang.NonNull;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded work queue which makes its {@link PoolTaskExecutor} add threads, up to the maximum pool size,
+ * before tasks are queued, like Tomcat's <code>TaskQueue</code>.
+ * <p>
+ * A {@link java.util.concurrent.ThreadPoolExecutor} only adds threads beyond its core size when the queue
+ * refuses a task, so {@link #offer(Runnable)} refuses tasks while no thread is idle and the pool can grow.
+ * Idle threads are those blocked taking from this queue, which is counted exactly without tracking tasks.
+ * Tasks refused in a race with the pool reaching its maximum size are {@link #force(Runnable) forced}
+ * into the queue by the executor's rejection handling.
+ *
+ * @author Kevan Simpson
+ */
+public class ScalingTaskQueue extends LinkedBlockingQueue<Runnable> {
+    private final transient PoolTaskExecutor executor;
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Creates a queue for the given executor.
+     *
+     * @param capacity The queue capacity.
+     * @param executor The executor whose pool grows before queueing.
+     */
+    public ScalingTaskQueue(int capacity, PoolTaskExecutor executor) {
+        super(capacity);
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean offer(@NonNull Runnable task) {
+        // idle threads will take the task from the queue
+        if (idleCount.get() > size())
+            return super.offer(task);
+        ThreadPoolExecutor pool = executor.getThreadPoolExecutor();
+        return (pool.getPoolSize() >= pool.getMaximumPoolSize()) && super.offer(task);
+    }
+
+    @Override @NonNull
+    public Runnable take() throws InterruptedException {
+        idleCount.incrementAndGet();
+        try {
+            return super.take();
+        }
+        finally {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        idleCount.incrementAndGet();
+        try {
+            return super.poll(timeout, unit);
+        }
+        finally {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Queues a task regardless of the pool size, if capacity remains.
+     *
+     * @param task The task to queue.
+     * @return <code>true</code> if the task was queued.
+     */
+    public boolean force(Runnable task) {
+        return super.offer(task);
+    }
+}
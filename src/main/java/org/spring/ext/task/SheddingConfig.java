@@ -0,0 +1,33 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Load-shedding configuration, whose presence makes a pool reject tasks once its queue stands,
+ * as decided by a {@link LoadShedder}.
+ *
+ * @author Kevan Simpson
+ */
+@Data
+public class SheddingConfig {
+    private Duration target = Duration.ofMillis(5L);
+    private Duration interval = Duration.ofMillis(100L);
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.spring.ext.task.RunningTasks.RunningTask;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Periodically checks the {@link RunningTasks} of a pool for tasks which have run longer than the
+ * {@link WatchdogConfig#getThreshold() threshold}, such as a call to a hung downstream service.
+ * <p>
+ * Each slow task is reported once: its stack trace is logged, it is counted as slow in the pool's
+ * {@link ExecutorStats}, and if configured its thread is interrupted. Tasks which ignore interrupts
+ * keep running, and are reported again only if they are resubmitted.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class SlowTaskDetector implements Runnable {
+    private final String poolName;
+    private final ExecutorStats stats;
+    private final WatchdogConfig config;
+    private Map<Thread, Runnable> reported = new IdentityHashMap<>();
+
+    /**
+     * Creates a detector for a single pool.
+     *
+     * @param poolName The name of the executor pool.
+     * @param stats The stats of the instrumented executor, tracking its running tasks.
+     * @param config The slow-task threshold.
+     */
+    public SlowTaskDetector(String poolName, ExecutorStats stats, WatchdogConfig config) {
+        this.poolName = poolName;
+        this.stats = stats;
+        this.config = config;
+    }
+
+    @Override
+    public void run() {
+        try {
+            check();
+        }
+        catch (RuntimeException ex) {
+            log.warn("Failed to check pool {} for slow tasks", poolName, ex);
+        }
+    }
+
+    /**
+     * Reports tasks which have exceeded the threshold since the previous check.
+     *
+     * @return the number of newly reported tasks.
+     */
+    int check() {
+        Map<Thread, Runnable> stillRunning = new IdentityHashMap<>();
+        int found = 0;
+        for (RunningTask running : stats.getRunningTasks().sample()) {
+            if (running.getRunningTime().compareTo(config.getThreshold()) < 0)
+                continue;
+            stillRunning.put(running.getThread(), running.getTask());
+            if (reported.get(running.getThread()) != running.getTask()) {
+                report(running);
+                found++;
+            }
+        }
+        // forget tasks which have finished, so a thread's next slow task is reported
+        reported = stillRunning;
+        return found;
+    }
+
+    private void report(RunningTask running) {
+        stats.recordSlow();
+        Throwable stack = new Throwable("Stack trace of " + running.getThread().getName());
+        stack.setStackTrace(running.getThread().getStackTrace());
+        log.warn("Task {} of pool {} has run for {}ms, exceeding {}ms", running.getTask(), poolName,
+                running.getRunningTime().toMillis(), config.getThreshold().toMillis(), stack);
+        if (config.isInterrupt() && stats.getRunningTasks().interrupt(running))
+            log.warn("Interrupted slow task {} of pool {}", running.getTask(), poolName);
+    }
+}
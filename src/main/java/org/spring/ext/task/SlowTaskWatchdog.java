@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules a {@link SlowTaskDetector} for each pool configured with a {@link PoolConfig#getWatchdog() watchdog},
+ * sharing a single daemon thread which is only started when at least one pool is watched.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class SlowTaskWatchdog implements SmartLifecycle {
+    private final Map<String, SlowTaskDetector> detectors = new LinkedHashMap<>();
+    private final Map<String, WatchdogConfig> configs = new LinkedHashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates detectors for the watched pools among the given executors.
+     *
+     * @param properties Configuration properties for executor beans.
+     * @param executors The executor beans mapped by configured name.
+     */
+    public SlowTaskWatchdog(MultipleExecutorProperties properties, Map<String, AsyncTaskExecutor> executors) {
+        properties.getPools().forEach((poolName, poolConfig) -> {
+            WatchdogConfig watchdog = poolConfig.getWatchdog();
+            if (watchdog == null)
+                return;
+            if (executors.get(poolName) instanceof InstrumentedExecutor executor && poolConfig.isInstrumented()) {
+                detectors.put(poolName, new SlowTaskDetector(poolName, executor.getStats(), watchdog));
+                configs.put(poolName, watchdog);
+            }
+            else
+                log.warn("Slow-task detection requires an instrumented executor, ignoring pool {}", poolName);
+        });
+    }
+
+    /**
+     * Returns the detectors of watched pools.
+     *
+     * @return the detectors mapped by configured name.
+     */
+    public Map<String, SlowTaskDetector> getDetectors() {
+        return detectors;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (detectors.isEmpty() || scheduler != null)
+            return;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("slow-task-watchdog-");
+        threadFactory.setDaemon(true);
+        scheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        detectors.forEach((poolName, detector) -> {
+            WatchdogConfig config = configs.get(poolName);
+            long interval = config.getInterval().toMillis();
+            log.info("Watching pool {} for tasks running over {}ms, every {}ms",
+                    poolName, config.getThreshold().toMillis(), interval);
+            scheduler.scheduleAtFixedRate(detector, interval, interval, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return scheduler != null;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.lang.NonNull;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The work queue of a pool in a {@link PoolGroup}, whose idle threads run tasks queued by sibling pools.
+ * <p>
+ * Tasks are queued in, and taken from, the pool's own queue. A thread waiting for a task sleeps until it is
+ * signalled, either by a task queued in its own pool or by the group, once a sibling queues enough tasks to
+ * be stolen, and then runs the oldest of them. Idle threads therefore never poll.
+ *
+ * @author Kevan Simpson
+ */
+public class StealingTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+    private final BlockingQueue<Runnable> queue;
+    private final PoolGroup group;
+    private final AtomicInteger borrowed = new AtomicInteger();
+    private final LongAdder stolen = new LongAdder();
+    private final AtomicInteger idle = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition signalled = lock.newCondition();
+
+    /**
+     * Creates a group member around the given queue.
+     *
+     * @param queue The pool's own work queue.
+     * @param group The group sharing queued work.
+     */
+    StealingTaskQueue(BlockingQueue<Runnable> queue, PoolGroup group) {
+        this.queue = queue;
+        this.group = group;
+    }
+
+    /** @return the pool's own work queue. */
+    public BlockingQueue<Runnable> getQueue() {
+        return queue;
+    }
+
+    /** @return the group sharing queued work. */
+    public PoolGroup getGroup() {
+        return group;
+    }
+
+    /** @return the number of sibling tasks run by the pool's threads. */
+    public long getStolenCount() {
+        return stolen.sum();
+    }
+
+    /** @return the number of the pool's threads currently running sibling tasks. */
+    public int getBorrowedCount() {
+        return borrowed.get();
+    }
+
+    @Override @NonNull
+    public Runnable take() throws InterruptedException {
+        Runnable task;
+        while ((task = next()) == null)
+            awaitSignal(Long.MAX_VALUE);
+        return task;
+    }
+
+    @Override
+    public Runnable poll(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        Runnable task;
+        while ((task = next()) == null && (remaining = deadline - System.nanoTime()) > 0L)
+            awaitSignal(remaining);
+        return task;
+    }
+
+    /**
+     * Wakes a thread waiting for a task, once one is added to the pool's own queue. Without one, a thread
+     * of a sibling is woken to steal it, if the queue now holds enough tasks.
+     */
+    void queued() {
+        if (!wake(false))
+            group.signalSiblings(this);
+    }
+
+    /**
+     * Wakes one of the pool's threads waiting for a task.
+     *
+     * @param steal Whether the thread is woken to steal, so only if the pool may run more sibling tasks.
+     * @return <code>true</code> if a thread was waiting.
+     */
+    boolean wake(boolean steal) {
+        if (idle.get() == 0 || (steal && borrowed.get() >= group.getMaxBorrowedThreads()))
+            return false;
+        lock.lock();
+        try {
+            signalled.signal();
+        }
+        finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private Runnable next() {
+        Runnable task = queue.poll();
+        return (task != null) ? task : steal();
+    }
+
+    private void awaitSignal(long nanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            idle.incrementAndGet();
+            try {
+                // a task queued since the last look signals only once this thread counts as idle
+                if (queue.isEmpty() && (borrowed.get() >= group.getMaxBorrowedThreads() || !group.canSteal(this)))
+                    signalled.awaitNanos(nanos);
+            }
+            finally {
+                idle.decrementAndGet();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    private Runnable steal() {
+        if (borrowed.incrementAndGet() > group.getMaxBorrowedThreads()) {
+            borrowed.decrementAndGet();
+            return null;
+        }
+        Runnable task = group.steal(this);
+        if (task == null) {
+            borrowed.decrementAndGet();
+            return null;
+        }
+        stolen.increment();
+        return () -> {
+            try {
+                task.run();
+            }
+            finally {
+                borrowed.decrementAndGet();
+            }
+        };
+    }
+
+    @Override
+    public boolean offer(@NonNull Runnable task) {
+        if (!queue.offer(task))
+            return false;
+        queued();
+        return true;
+    }
+
+    @Override
+    public boolean offer(@NonNull Runnable task, long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        if (!queue.offer(task, timeout, unit))
+            return false;
+        queued();
+        return true;
+    }
+
+    @Override
+    public void put(@NonNull Runnable task) throws InterruptedException {
+        queue.put(task);
+        queued();
+    }
+
+    @Override
+    public Runnable poll() {
+        return queue.poll();
+    }
+
+    @Override
+    public Runnable peek() {
+        return queue.peek();
+    }
+
+    @Override
+    public boolean remove(Object task) {
+        return queue.remove(task);
+    }
+
+    @Override
+    public boolean contains(Object task) {
+        return queue.contains(task);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> tasks) {
+        return queue.drainTo(tasks);
+    }
+
+    @Override
+    public int drainTo(@NonNull Collection<? super Runnable> tasks, int maxElements) {
+        return queue.drainTo(tasks, maxElements);
+    }
+
+    @Override @NonNull
+    public Iterator<Runnable> iterator() {
+        return queue.iterator();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+}
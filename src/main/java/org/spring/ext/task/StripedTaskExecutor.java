@@ -0,0 +1,318 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsyncTaskExecutor} which runs tasks sharing a key in submission order, while tasks of
+ * different keys run in parallel, without tasks having to synchronize among themselves.
+ * <p>
+ * Each key is hashed to one of a fixed number of lanes, serial queues which are drained by at most one
+ * thread of a shared worker pool at a time. Keys sharing a lane are ordered together, so more lanes than
+ * threads reduce such false sharing. Tasks submitted without a key are handed to the worker pool directly.
+ * If the worker pool rejects a lane, the submitted task is removed from it and rejected. A lane which cannot
+ * be rescheduled after its drain limit, as the workers are saturated or shutting down, keeps draining on
+ * its current thread instead, unless the workers have been stopped, in which case its tasks are dropped.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class StripedTaskExecutor implements AsyncTaskExecutor, InstrumentedExecutor, DisposableBean {
+    private static final int DRAIN_LIMIT = 64;
+
+    private final PoolTaskExecutor workers;
+    private final Lane[] lanes;
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final ExecutorStats stats = new ExecutorStats();
+    private volatile boolean shuttingDown;
+    private volatile boolean stopping;
+    private boolean instrumented = true;
+    private TaskDecorator taskDecorator;
+    private TaskDecorator effectiveDecorator;
+
+    /**
+     * Creates a striped executor.
+     *
+     * @param workers The initialized pool which drains lanes.
+     * @param stripes The number of lanes to which keys are hashed.
+     */
+    public StripedTaskExecutor(PoolTaskExecutor workers, int stripes) {
+        this.workers = workers;
+        this.lanes = new Lane[Math.max(1, stripes)];
+        for (int i = 0; i < lanes.length; i++)
+            lanes[i] = new Lane();
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies a {@link TaskDecorator} to be applied to each task when it is submitted.
+     *
+     * @param taskDecorator The optional task decorator.
+     */
+    public void setTaskDecorator(@Nullable TaskDecorator taskDecorator) {
+        this.taskDecorator = taskDecorator;
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies whether queue and execution times are recorded, defaults to <code>true</code>.
+     *
+     * @param instrumented The flag to record task timings.
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+        resolveDecorator();
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the pool which drains lanes, each drain being a single task.
+     *
+     * @return the worker pool.
+     */
+    public PoolTaskExecutor getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Returns the number of tasks waiting in lanes.
+     *
+     * @return the number of queued keyed tasks.
+     */
+    public int getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        try {
+            workers.execute(decorate(task));
+        }
+        catch (TaskRejectedException ex) {
+            stats.recordRejected();
+            throw ex;
+        }
+    }
+
+    /**
+     * Executes a task after all previously submitted tasks with an equal key.
+     *
+     * @param key The ordering key, e.g. an account id.
+     * @param task The task to execute.
+     * @throws TaskRejectedException if the worker pool rejects the task's lane, or is shutting down.
+     */
+    public void execute(Object key, Runnable task) {
+        if (shuttingDown) {
+            stats.recordRejected();
+            throw new TaskRejectedException("Executor is shutting down, did not accept task: " + task);
+        }
+        lanes[indexOf(key)].add(decorate(task));
+    }
+
+    /**
+     * Submits a task to run after all previously submitted tasks with an equal key.
+     *
+     * @param key The ordering key, e.g. an account id.
+     * @param task The task to execute.
+     * @param <T> The type of the task's result.
+     * @return a future completed with the task's result.
+     * @throws TaskRejectedException if the worker pool rejects the task's lane.
+     */
+    public <T> CompletableFuture<T> submitCompletable(Object key, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(key, () -> {
+            try {
+                future.complete(task.call());
+            }
+            catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Stops accepting keyed tasks and initiates a shutdown of the worker pool, according to its shutdown
+     * configuration. Lanes are drained if the workers wait for tasks to complete, and dropped otherwise.
+     */
+    public void shutdown() {
+        if (!workers.isWaitForTasksToCompleteOnShutdown()) {
+            int dropped = shutdownNow();
+            if (dropped > 0)
+                log.warn("Shutting down with {} queued tasks, which will not run", dropped);
+            return;
+        }
+        shuttingDown = true;
+        workers.shutdown();
+    }
+
+    /**
+     * Stops at once without waiting for the worker pool to terminate, interrupting running tasks and
+     * discarding the tasks queued by lanes and by the worker pool.
+     *
+     * @return the number of discarded tasks.
+     */
+    public int shutdownNow() {
+        shuttingDown = true;
+        stopping = true;
+        int dropped = 0;
+        // lanes are dropped before running drains are interrupted, which would otherwise drop them too
+        for (Lane lane : lanes)
+            dropped += lane.drop();
+        // queued drains of lanes are discarded along with unkeyed tasks
+        for (Runnable queued : workers.shutdownNow()) {
+            if (!(queued instanceof Lane))
+                dropped++;
+        }
+        return dropped;
+    }
+
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+
+    private int indexOf(Object key) {
+        int hash = key.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    private Runnable decorate(Runnable task) {
+        return (effectiveDecorator != null) ? effectiveDecorator.decorate(task) : task;
+    }
+
+    private void resolveDecorator() {
+        this.effectiveDecorator = instrumented ? new TimingDecorator(stats, taskDecorator) : taskDecorator;
+    }
+
+    /** A serial queue of tasks, drained by at most one worker at a time. */
+    private final class Lane implements Runnable {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        void add(Runnable task) {
+            tasks.add(task);
+            queuedCount.incrementAndGet();
+            try {
+                schedule();
+            }
+            catch (TaskRejectedException ex) {
+                if (tasks.remove(task))
+                    queuedCount.decrementAndGet();
+                stats.recordRejected();
+                throw ex;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                drain(DRAIN_LIMIT);
+            }
+            finally {
+                scheduled.set(false);
+                try {
+                    // tasks added while draining, or beyond the drain limit
+                    schedule();
+                }
+                catch (TaskRejectedException ex) {
+                    log.debug("Lane rescheduling rejected, draining {} tasks inline", tasks.size());
+                    drainInline();
+                }
+            }
+        }
+
+        /**
+         * Drops the queued tasks of this lane, counting them as rejected.
+         *
+         * @return the number of dropped tasks.
+         */
+        int drop() {
+            int dropped = 0;
+            while (tasks.poll() != null) {
+                queuedCount.decrementAndGet();
+                stats.recordRejected();
+                dropped++;
+            }
+            return dropped;
+        }
+
+        private void drain(int limit) {
+            for (int i = 0; i < limit && !stopping; i++) {
+                Runnable task = tasks.poll();
+                if (task == null)
+                    break;
+                queuedCount.decrementAndGet();
+                runSafely(task);
+            }
+        }
+
+        private void drainInline() {
+            // tasks added meanwhile are drained by this loop, unless another thread claims the lane first
+            while (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    drain(Integer.MAX_VALUE);
+                    int dropped = stopping ? drop() : 0;
+                    if (dropped > 0)
+                        log.warn("Dropped {} striped tasks, as the worker pool has stopped", dropped);
+                }
+                finally {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void schedule() {
+            if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+                try {
+                    workers.execute(this);
+                }
+                catch (TaskRejectedException ex) {
+                    scheduled.set(false);
+                    throw ex;
+                }
+            }
+        }
+
+        private void runSafely(Runnable task) {
+            try {
+                task.run();
+            }
+            catch (RuntimeException ex) {
+                log.error("Striped task failed", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import java.util.List;
+
+/**
+ * Processes a batch of items submitted to a {@link BatchingTaskExecutor}, e.g. as a single bulk write.
+ * <p>
+ * Items are submitted with {@link BatchingTaskExecutor#submitItem(Object)}, whose futures complete once
+ * the batch has been processed, or exceptionally if the processor throws. Tasks given to
+ * {@link BatchingTaskExecutor#execute(Runnable)} are passed as items too. Task decorators and timings
+ * are not applied to items individually.
+ *
+ * @param <T> The type of the submitted items.
+ * @author Kevan Simpson
+ */
+@FunctionalInterface
+public interface TaskBatchProcessor<T> {
+    /**
+     * Processes a batch of items on a worker thread.
+     *
+     * @param items The submitted items, in submission order.
+     */
+    void process(List<T> items);
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a collection of tasks in parallel on an {@link AsyncTaskExecutor} and joins their results,
+ * modeled on Java's <code>StructuredTaskScope</code>: no task outlives the call which forked it.
+ * <p>
+ * Once the outcome is decided, whether by enough results, a failure or the timeout, tasks still running
+ * are cancelled with an interrupt and tasks not yet started are never submitted. At most
+ * {@link #maxInFlight(int) maxInFlight} tasks are submitted at a time, so one call cannot flood the pool.
+ * <pre>
+ * List&lt;Quote&gt; quotes = scopes.scope("quotePool")
+ *         .timeout(Duration.ofMillis(500))
+ *         .maxInFlight(8)
+ *         .firstN(quoteRequests, 3);
+ * </pre>
+ *
+ * @author Kevan Simpson
+ */
+public class TaskScope {
+    private final AsyncTaskExecutor executor;
+    private Duration timeout;
+    private int maxInFlight = Integer.MAX_VALUE;
+    private boolean cancelOnFailure = true;
+
+    /**
+     * Creates a scope running tasks on the given executor.
+     *
+     * @param executor The executor to run tasks.
+     */
+    public TaskScope(AsyncTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Specifies the time within which the outcome must be decided, shared by all tasks. Defaults to none.
+     *
+     * @param timeout The overall timeout, or <code>null</code> to wait indefinitely.
+     * @return this scope.
+     */
+    public TaskScope timeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Specifies the maximum number of tasks submitted and not yet completed. Defaults to unlimited.
+     *
+     * @param maxInFlight The maximum number of tasks in flight.
+     * @return this scope.
+     */
+    public TaskScope maxInFlight(int maxInFlight) {
+        Assert.isTrue(maxInFlight > 0, "maxInFlight must be positive");
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    /**
+     * Specifies whether the first failed task fails the outcome, cancelling the others, defaults to
+     * <code>true</code>. Otherwise failures are tolerated while enough tasks remain to decide the outcome.
+     *
+     * @param cancelOnFailure The flag to fail fast.
+     * @return this scope.
+     */
+    public TaskScope cancelOnFailure(boolean cancelOnFailure) {
+        this.cancelOnFailure = cancelOnFailure;
+        return this;
+    }
+
+    /**
+     * Runs all tasks, returning all of their results.
+     *
+     * @param tasks The tasks to run.
+     * @param <T> The type of the tasks' results.
+     * @return the results, in the order of the tasks.
+     * @throws ExecutionException if a task failed, with its exception as the cause.
+     * @throws TimeoutException if the timeout elapsed first.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public <T> List<T> allOf(Collection<? extends Callable<T>> tasks)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        if (tasks.isEmpty())
+            return List.of();
+        return new Join<T>(tasks, tasks.size()).await().ordered();
+    }
+
+    /**
+     * Runs tasks until one of them succeeds, returning its result.
+     *
+     * @param tasks The tasks to run.
+     * @param <T> The type of the tasks' results.
+     * @return the result of the first task to succeed.
+     * @throws ExecutionException if no task can succeed, with the first failure as the cause.
+     * @throws TimeoutException if the timeout elapsed first.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public <T> T anyOf(Collection<? extends Callable<T>> tasks)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        return firstN(tasks, 1).get(0);
+    }
+
+    /**
+     * Runs tasks until the given number of them succeed, returning their results.
+     *
+     * @param tasks The tasks to run.
+     * @param count The number of results required.
+     * @param <T> The type of the tasks' results.
+     * @return the first results, in the order the tasks completed.
+     * @throws ExecutionException if too few tasks can succeed, with the first failure as the cause.
+     * @throws TimeoutException if the timeout elapsed first.
+     * @throws InterruptedException if the calling thread was interrupted while waiting.
+     */
+    public <T> List<T> firstN(Collection<? extends Callable<T>> tasks, int count)
+            throws ExecutionException, TimeoutException, InterruptedException {
+        Assert.isTrue(count > 0 && count <= tasks.size(), "count must be between 1 and the number of tasks");
+        return new Join<T>(tasks, count).await().completed;
+    }
+
+    /** The state of a single call, shared by the tasks it runs. */
+    private final class Join<T> {
+        private final List<Callable<T>> tasks;
+        private final int required;
+        private final Object[] results;
+        private final List<T> completed = new ArrayList<>();
+        private final Future<?>[] futures;
+        private final CompletableFuture<Void> outcome = new CompletableFuture<>();
+        private int next;
+        private int inFlight;
+        private int failures;
+        private Throwable failure;
+        private int decider = -1;
+
+        Join(Collection<? extends Callable<T>> tasks, int required) {
+            this.tasks = List.copyOf(tasks);
+            this.required = required;
+            this.results = new Object[this.tasks.size()];
+            this.futures = new Future<?>[this.tasks.size()];
+        }
+
+        Join<T> await() throws ExecutionException, TimeoutException, InterruptedException {
+            try {
+                launch();
+                if (timeout != null)
+                    outcome.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                else
+                    outcome.get();
+                return this;
+            }
+            finally {
+                // cancel stragglers, however the outcome was decided
+                outcome.cancel(false);
+                cancelAll();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> ordered() {
+            return Arrays.asList((T[]) results);
+        }
+
+        private void launch() {
+            while (true) {
+                int index;
+                synchronized (this) {
+                    if (outcome.isDone() || next == tasks.size() || inFlight == maxInFlight)
+                        return;
+                    index = next++;
+                    inFlight++;
+                }
+                Callable<T> task = tasks.get(index);
+                Future<?> future;
+                try {
+                    future = executor.submit(() -> run(index, task));
+                }
+                catch (RuntimeException ex) {
+                    onComplete(index, null, ex);
+                    continue;
+                }
+                synchronized (this) {
+                    futures[index] = future;
+                }
+                if (outcome.isDone())
+                    future.cancel(true);
+            }
+        }
+
+        private void run(int index, Callable<T> task) {
+            if (outcome.isDone())
+                return;
+            T result;
+            try {
+                result = task.call();
+            }
+            catch (Throwable ex) {
+                onComplete(index, null, ex);
+                return;
+            }
+            onComplete(index, result, null);
+        }
+
+        private void onComplete(int index, T result, Throwable ex) {
+            boolean decided;
+            synchronized (this) {
+                inFlight--;
+                if (outcome.isDone())
+                    return;
+                if (ex != null) {
+                    failures++;
+                    if (failure == null)
+                        failure = ex;
+                    else
+                        failure.addSuppressed(ex);
+                    decided = cancelOnFailure || tasks.size() - failures < required;
+                    if (decided) {
+                        decider = index;
+                        outcome.completeExceptionally(failure);
+                    }
+                }
+                else {
+                    results[index] = result;
+                    completed.add(result);
+                    decided = completed.size() == required;
+                    if (decided) {
+                        decider = index;
+                        outcome.complete(null);
+                    }
+                }
+            }
+            if (decided)
+                cancelAll();
+            else
+                launch();
+        }
+
+        private void cancelAll() {
+            List<Future<?>> running = new ArrayList<>();
+            synchronized (this) {
+                // the deciding task is completing, so is not interrupted
+                for (int i = 0; i < futures.length; i++)
+                    if (i != decider && futures[i] != null)
+                        running.add(futures[i]);
+            }
+            running.forEach(future -> future.cancel(true));
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link AsyncTaskExecutor} which limits the rate at which its tasks start, and how many run at once,
+ * e.g. for tasks calling a rate-limited downstream service.
+ * <p>
+ * Tasks are handed to the worker pool only once they hold a permit, so that they never occupy a thread
+ * while waiting for one. Tasks without a permit wait, in submission order, in a pending queue of up to
+ * <code>pendingCapacity</code> tasks, which is drained whenever a task completes or, for a rate limit,
+ * by a timer when the next permit is due. Permits are a {@link TokenBucket} and a {@link Semaphore},
+ * both taken by compare-and-set without locking. Pending tasks which are dropped, on shutdown or
+ * because the worker pool rejects them, have their futures cancelled. A graceful shutdown instead
+ * keeps starting pending tasks as permits allow, and shuts the worker pool down once none are left.
+ *
+ * @author Kevan Simpson
+ */
+@Log4j2
+public class ThrottledTaskExecutor implements AsyncTaskExecutor, InstrumentedExecutor, DisposableBean {
+    private final PoolTaskExecutor workers;
+    private final TokenBucket tokens;
+    private final Semaphore permits;
+    private final int pendingCapacity;
+    private final Queue<PendingTask> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ScheduledExecutorService timer;
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+    private final AtomicBoolean workersShutDown = new AtomicBoolean();
+    private volatile boolean shuttingDown;
+    private final ExecutorStats stats = new ExecutorStats();
+    private boolean instrumented = true;
+    private TaskDecorator taskDecorator;
+    private TaskDecorator effectiveDecorator;
+
+    /**
+     * Creates a throttled executor.
+     *
+     * @param poolName The name of the executor pool, used to name its timer thread.
+     * @param workers The initialized pool which runs tasks.
+     * @param maxTasksPerSecond The maximum rate at which tasks start, unlimited if not positive.
+     * @param maxConcurrentTasks The maximum number of tasks running at once, unlimited if not positive.
+     * @param pendingCapacity The maximum number of tasks waiting for a permit.
+     */
+    public ThrottledTaskExecutor(String poolName, PoolTaskExecutor workers, double maxTasksPerSecond,
+                                 int maxConcurrentTasks, int pendingCapacity) {
+        this.workers = workers;
+        this.tokens = (maxTasksPerSecond > 0.0) ? new TokenBucket(maxTasksPerSecond) : null;
+        this.permits = (maxConcurrentTasks > 0) ? new Semaphore(maxConcurrentTasks) : null;
+        this.pendingCapacity = Math.max(1, pendingCapacity);
+        if (tokens != null) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(poolName + "-throttle-");
+            threadFactory.setDaemon(true);
+            this.timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        }
+        else
+            this.timer = null;
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies a {@link TaskDecorator} to be applied to each task when it is submitted.
+     *
+     * @param taskDecorator The optional task decorator.
+     */
+    public void setTaskDecorator(@Nullable TaskDecorator taskDecorator) {
+        this.taskDecorator = taskDecorator;
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies whether queue and execution times are recorded, defaults to <code>true</code>.
+     * Queue times include the time tasks wait for a permit.
+     *
+     * @param instrumented The flag to record task timings.
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+        resolveDecorator();
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the pool which runs tasks once they hold a permit.
+     *
+     * @return the worker pool.
+     */
+    public PoolTaskExecutor getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Returns the number of tasks waiting for a permit.
+     *
+     * @return the number of pending tasks.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        if (shuttingDown) {
+            stats.recordRejected();
+            throw new TaskRejectedException("Executor is shutting down, did not accept task: " + task);
+        }
+        Runnable decorated = (effectiveDecorator != null) ? effectiveDecorator.decorate(task) : task;
+        // tasks start in submission order, so only take a permit directly when none are waiting
+        if (pendingCount.get() == 0 && tryAcquire()) {
+            dispatch(new PendingTask(task, decorated));
+            return;
+        }
+        if (pendingCount.incrementAndGet() > pendingCapacity) {
+            pendingCount.decrementAndGet();
+            stats.recordRejected();
+            throw new TaskRejectedException("Too many tasks waiting for a permit, did not accept task: " + task);
+        }
+        pending.add(new PendingTask(task, decorated));
+        drain();
+    }
+
+    /**
+     * Stops accepting tasks and shuts down according to the worker pool's shutdown configuration: if it waits
+     * for tasks to complete, {@link #shutdownGracefully() gracefully}, and otherwise by discarding pending tasks,
+     * cancelling their futures, and shutting the worker pool down. Does nothing once a shutdown has begun.
+     */
+    public void shutdown() {
+        if (workers.isWaitForTasksToCompleteOnShutdown()) {
+            shutdownGracefully();
+            return;
+        }
+        if (shuttingDown)
+            return;
+        shuttingDown = true;
+        int dropped = cancelPending();
+        if (dropped > 0)
+            log.warn("Shutting down with {} tasks waiting for a permit, which will not run", dropped);
+        workersShutDown.set(true);
+        workers.shutdown();
+    }
+
+    /**
+     * Stops accepting tasks, while pending tasks still start as permits allow, and shuts the worker pool down
+     * once none are left, so that it runs them all before terminating. Does nothing once a shutdown has begun.
+     */
+    public void shutdownGracefully() {
+        if (shuttingDown)
+            return;
+        shuttingDown = true;
+        drain();
+    }
+
+    /**
+     * Stops at once without waiting for the worker pool to terminate, interrupting running tasks and
+     * discarding pending and queued ones, whose futures are cancelled.
+     *
+     * @return the number of discarded tasks.
+     */
+    public int shutdownNow() {
+        shuttingDown = true;
+        workersShutDown.set(true);
+        int dropped = cancelPending();
+        List<Runnable> queued = workers.shutdownNow();
+        queued.forEach(each -> {
+            if (each instanceof DispatchedTask dispatched)
+                dispatched.pending().cancel();
+        });
+        return dropped + queued.size();
+    }
+
+    /**
+     * Stops starting pending tasks and discards them, cancelling their futures, once shutting down.
+     *
+     * @return the number of discarded tasks.
+     */
+    private int cancelPending() {
+        if (timer != null)
+            timer.shutdownNow();
+        int dropped = pendingCount.getAndSet(0);
+        PendingTask next;
+        while ((next = pending.poll()) != null)
+            next.cancel();
+        return dropped;
+    }
+
+    @Override
+    public void destroy() {
+        shutdown();
+    }
+
+    private boolean tryAcquire() {
+        if (permits != null && !permits.tryAcquire())
+            return false;
+        if (tokens != null && !tokens.tryAcquire()) {
+            if (permits != null)
+                permits.release();
+            return false;
+        }
+        return true;
+    }
+
+    private void drain() {
+        startPending();
+        // a graceful shutdown completes once no task is left waiting for a permit
+        if (shuttingDown && pendingCount.get() == 0 && workersShutDown.compareAndSet(false, true)) {
+            if (timer != null)
+                timer.shutdownNow();
+            // directly, as the worker pool would otherwise await its own termination from one of its threads
+            workers.getThreadPoolExecutor().shutdown();
+        }
+    }
+
+    private void startPending() {
+        while (pendingCount.get() > 0) {
+            if (!tryAcquire()) {
+                // a completing task drains again, once it releases its permit
+                if (tokens != null && (permits == null || permits.availablePermits() > 0))
+                    scheduleRefill();
+                return;
+            }
+            PendingTask next = pending.poll();
+            if (next == null) {
+                // counted but not yet added, the submitting thread drains it
+                if (permits != null)
+                    permits.release();
+                if (tokens != null)
+                    tokens.release();
+                return;
+            }
+            pendingCount.decrementAndGet();
+            try {
+                dispatch(next);
+            }
+            catch (TaskRejectedException ex) {
+                log.warn("Worker pool rejected a pending task: {}", ex.getMessage());
+                next.cancel();
+            }
+        }
+    }
+
+    private void dispatch(PendingTask task) {
+        try {
+            workers.execute(new DispatchedTask(task));
+        }
+        catch (TaskRejectedException ex) {
+            if (permits != null)
+                permits.release();
+            stats.recordRejected();
+            throw ex;
+        }
+    }
+
+    private void scheduleRefill() {
+        if (refillScheduled.compareAndSet(false, true)) {
+            try {
+                timer.schedule(() -> {
+                    refillScheduled.set(false);
+                    drain();
+                }, tokens.nanosUntilAvailable(), TimeUnit.NANOSECONDS);
+            }
+            catch (RuntimeException ex) {
+                // shut down
+                refillScheduled.set(false);
+            }
+        }
+    }
+
+    private void resolveDecorator() {
+        this.effectiveDecorator = instrumented ? new TimingDecorator(stats, taskDecorator) : taskDecorator;
+    }
+
+    /** A task holding a permit, queued by the worker pool, returning the permit once complete. */
+    private final class DispatchedTask implements QueuedTask {
+        private final PendingTask pending;
+        private final long dispatched = System.nanoTime();
+
+        DispatchedTask(PendingTask pending) {
+            this.pending = pending;
+        }
+
+        PendingTask pending() {
+            return pending;
+        }
+
+        @Override
+        public long getSubmittedNanos() {
+            return dispatched;
+        }
+
+        @Override
+        public void run() {
+            try {
+                pending.decorated().run();
+            }
+            finally {
+                if (permits != null) {
+                    permits.release();
+                    drain();
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return pending.task().toString();
+        }
+    }
+
+    /** A task waiting for a permit, as submitted and as decorated to run. */
+    private record PendingTask(Runnable task, Runnable decorated) {
+        void cancel() {
+            if (task instanceof Future<?> future)
+                future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+/**
+ * A {@link TaskDecorator} which records queue and execution times into {@link ExecutorStats},
+ * applying an optional delegate decorator on the submitting thread. Running tasks are tracked
+ * by the {@link RunningTasks} of the stats. A {@link ContextAwareDecorator} delegate is applied within
+ * the timed task itself, so that the contexts and timings of a task cost a single wrapper.
+ * {@link Untimed} tasks, such as warm-up tasks, are not recorded.
+ *
+ * @author Kevan Simpson
+ */
+public class TimingDecorator implements TaskDecorator {
+    private final ExecutorStats stats;
+    private final TaskDecorator delegate;
+    private final ContextAwareDecorator contexts;
+
+    /**
+     * Creates a timing decorator.
+     *
+     * @param stats The statistics to record into.
+     * @param delegate The optional decorator applied to each task.
+     */
+    public TimingDecorator(ExecutorStats stats, @Nullable TaskDecorator delegate) {
+        this.stats = stats;
+        this.delegate = delegate;
+        this.contexts = (delegate instanceof ContextAwareDecorator contextAware) ? contextAware : null;
+    }
+
+    @Override @NonNull
+    public Runnable decorate(@NonNull Runnable runnable) {
+        long submitted = System.nanoTime();
+        if (contexts != null && !(runnable instanceof Untimed))
+            return new TimedTask(submitted, runnable, runnable, contexts.capture());
+        Runnable task = (delegate != null) ? delegate.decorate(runnable) : runnable;
+        return (runnable instanceof Untimed) ? task : new TimedTask(submitted, runnable, task, null);
+    }
+
+    /** A task which is not recorded in the stats of the pool running it. */
+    interface Untimed extends Runnable {
+    }
+
+    /** A task recording its queue and execution times when run. */
+    private final class TimedTask implements QueuedTask {
+        private final long submitted;
+        private final Runnable runnable;
+        private final Runnable task;
+        private final Object[] captured;
+
+        TimedTask(long submitted, Runnable runnable, Runnable task, @Nullable Object[] captured) {
+            this.submitted = submitted;
+            this.runnable = runnable;
+            this.task = task;
+            this.captured = captured;
+        }
+
+        @Override
+        public long getSubmittedNanos() {
+            return submitted;
+        }
+
+        @Override
+        public void run() {
+            long started = System.nanoTime();
+            stats.recordStarted(started - submitted);
+            boolean tracked = stats.getRunningTasks().started(runnable);
+            try {
+                if (captured != null)
+                    contexts.run(task, captured);
+                else
+                    task.run();
+            }
+            finally {
+                if (tracked)
+                    stats.getRunningTasks().finished();
+                long finished = System.nanoTime();
+                stats.recordFinished(finished - started, finished);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return runnable.toString();
+        }
+    }
+}
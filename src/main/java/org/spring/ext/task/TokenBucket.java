@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket, limiting the rate at which permits are taken while allowing bursts of up to
+ * one second's worth of permits after a quiet period.
+ * <p>
+ * Implemented as the Generic Cell Rate Algorithm: rather than tokens and a refill timer, the bucket holds
+ * the time at which it would next be empty, so that taking a permit is a single compare-and-set.
+ *
+ * @author Kevan Simpson
+ */
+public class TokenBucket {
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong emptyTime;
+
+    /**
+     * Creates a full token bucket.
+     *
+     * @param permitsPerSecond The sustained rate of permits, at least one per day.
+     */
+    public TokenBucket(double permitsPerSecond) {
+        this.intervalNanos = Math.max(1L, Math.min(TimeUnit.DAYS.toNanos(1L),
+                (long) (TimeUnit.SECONDS.toNanos(1L) / permitsPerSecond)));
+        long burst = Math.max(1L, (long) permitsPerSecond);
+        this.toleranceNanos = (burst - 1L) * intervalNanos;
+        this.emptyTime = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a permit if one is available, without waiting.
+     *
+     * @return <code>true</code> if a permit was taken.
+     */
+    public boolean tryAcquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long empty = emptyTime.get();
+            if (empty - now > toleranceNanos)
+                return false;
+            long next = ((empty - now < 0L) ? now : empty) + intervalNanos;
+            if (emptyTime.compareAndSet(empty, next))
+                return true;
+        }
+    }
+
+    /**
+     * Returns a permit taken by {@link #tryAcquire()} but not used.
+     */
+    public void release() {
+        emptyTime.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * Returns how long until a permit is available.
+     *
+     * @return the wait in nanoseconds, or 0 if a permit is available now.
+     */
+    public long nanosUntilAvailable() {
+        return Math.max(0L, emptyTime.get() - toleranceNanos - System.nanoTime());
+    }
+}
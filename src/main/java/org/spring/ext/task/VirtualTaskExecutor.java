@@ -0,0 +1,139 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An {@link AsyncTaskExecutor} which runs each task on a new virtual thread,
+ * optionally limiting the number of concurrently running tasks.
+ * <p>
+ * Virtual threads are obtained from Spring's multi-release {@link VirtualThreadTaskExecutor},
+ * so this class compiles against Java 17 but can only be instantiated on Java 21+.
+ * When a concurrency limit is set, each task acquires a {@link Semaphore} permit on its
+ * own virtual thread, so submitting threads are never blocked.
+ *
+ * @author Kevan Simpson
+ */
+public class VirtualTaskExecutor implements AsyncTaskExecutor, InstrumentedExecutor {
+    /** Permits value indicating no concurrency limit. */
+    public static final int UNBOUNDED_CONCURRENCY = -1;
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+    private final ExecutorStats stats = new ExecutorStats(true);
+    private boolean instrumented = true;
+    private TaskDecorator taskDecorator;
+    private TaskDecorator effectiveDecorator;
+
+    /**
+     * Creates an executor of virtual threads.
+     *
+     * @param threadNamePrefix The prefix for virtual thread names.
+     * @param concurrencyLimit The maximum number of concurrently running tasks,
+     *                         or {@link #UNBOUNDED_CONCURRENCY}.
+     * @throws UnsupportedOperationException if running before Java 21.
+     */
+    public VirtualTaskExecutor(String threadNamePrefix, int concurrencyLimit) {
+        this(new VirtualThreadTaskExecutor(threadNamePrefix).getVirtualThreadFactory(), concurrencyLimit);
+    }
+
+    VirtualTaskExecutor(ThreadFactory threadFactory, int concurrencyLimit) {
+        this.threadFactory = threadFactory;
+        this.permits = (concurrencyLimit > 0) ? new Semaphore(concurrencyLimit, true) : null;
+        resolveDecorator();
+    }
+
+    /**
+     * Detects whether virtual threads are supported by the running JVM.
+     *
+     * @return <code>true</code> if virtual threads are supported.
+     */
+    public static boolean isSupported() {
+        try {
+            new VirtualThreadTaskExecutor();
+            return true;
+        }
+        catch (UnsupportedOperationException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Specifies a {@link TaskDecorator} to be applied to any task about to be executed.
+     *
+     * @param taskDecorator The optional task decorator.
+     */
+    public void setTaskDecorator(@Nullable TaskDecorator taskDecorator) {
+        this.taskDecorator = taskDecorator;
+        resolveDecorator();
+    }
+
+    /**
+     * Specifies whether queue and execution times are recorded, defaults to <code>true</code>.
+     *
+     * @param instrumented The flag to record task timings.
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+        resolveDecorator();
+    }
+
+    @Override
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the number of tasks waiting for a permit to run.
+     *
+     * @return the number of waiting tasks, always zero without a concurrency limit.
+     */
+    public int getQueueSize() {
+        return (permits != null) ? permits.getQueueLength() : 0;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable task) {
+        Runnable decorated = (effectiveDecorator != null) ? effectiveDecorator.decorate(task) : task;
+        if (permits == null)
+            threadFactory.newThread(decorated).start();
+        else
+            threadFactory.newThread(() -> runWithPermit(decorated)).start();
+    }
+
+    private void resolveDecorator() {
+        this.effectiveDecorator = instrumented ? new TimingDecorator(stats, taskDecorator) : taskDecorator;
+    }
+
+    private void runWithPermit(Runnable task) {
+        permits.acquireUninterruptibly();
+        try {
+            task.run();
+        }
+        finally {
+            permits.release();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Slow-task detection configuration, whose presence makes a {@link SlowTaskDetector} report tasks
+ * of an instrumented pool which run longer than <code>threshold</code>, checking every <code>interval</code>.
+ *
+ * @author Kevan Simpson
+ */
+@Data
+public class WatchdogConfig {
+    private Duration threshold = Duration.ofSeconds(30L);
+    private Duration interval = Duration.ofSeconds(1L);
+    private boolean interrupt;
+}
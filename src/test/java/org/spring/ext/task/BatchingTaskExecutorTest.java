@@ -0,0 +1,184 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+
+/**
+ * Verifies batching of tasks by {@link BatchingTaskExecutor}.
+ *
+ * @author Kevan Simpson
+ */
+public class BatchingTaskExecutorTest {
+
+    @Test
+    public void testFlushOnSizeAndDelay() throws Exception {
+        BatchingTaskExecutor executor = newBatchingPool(3, Duration.ofHours(1L), null);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new CopyOnWriteArrayList<>();
+        BatchingTaskExecutor delayed = newBatchingPool(100, Duration.ofMillis(20L), null);
+        try {
+            for (int i = 0; i < 3; i++)
+                futures.add(executor.submit(() -> threads.add(Thread.currentThread().getName())));
+            for (Future<?> future : futures)
+                future.get(5, TimeUnit.SECONDS);
+            assertThat(threads).hasSize(1);
+
+            Future<?> pending = executor.submit(() -> {});
+            assertThat(executor.getBufferedCount()).isEqualTo(1);
+            executor.flush();
+            pending.get(5, TimeUnit.SECONDS);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getStats().getExecutedCount() == 4L);
+
+            assertThat(delayed.submit(() -> "done").get(5, TimeUnit.SECONDS)).isEqualTo("done");
+            assertThat(delayed.getBufferedCount()).isEqualTo(0);
+        }
+        finally {
+            executor.shutdown();
+            delayed.shutdown();
+        }
+    }
+
+    @Test
+    public void testBatchProcessorAndShutdown() {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        BatchingTaskExecutor executor =
+                newBatchingPool(2, Duration.ofHours(1L), tasks -> batchSizes.add(tasks.size()));
+        try {
+            for (int i = 0; i < 5; i++)
+                executor.execute(() -> {});
+
+            executor.shutdown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> batchSizes.size() == 3);
+            assertThat(batchSizes).containsExactlyInAnyOrder(2, 2, 1);
+            assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {}));
+            assertThat(executor.getStats().getRejectedCount()).isEqualTo(1L);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testItemFuturesCompleteWithTheirBatch() throws Exception {
+        List<String> processed = new CopyOnWriteArrayList<>();
+        TaskBatchProcessor<String> processor = items -> {
+            if (items.contains("fail"))
+                throw new IllegalArgumentException("fail");
+            processed.addAll(items);
+        };
+        BatchingTaskExecutor executor = newBatchingPool(2, Duration.ofHours(1L), processor);
+        try {
+            CompletableFuture<Void> first = executor.submitItem("a");
+            assertThat(first).isNotDone();
+            executor.submitItem("b").get(5, TimeUnit.SECONDS);
+            first.get(5, TimeUnit.SECONDS);
+            assertThat(processed).containsExactly("a", "b");
+
+            CompletableFuture<Void> failed = executor.submitItem("fail");
+            executor.flush();
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertThat(ex).hasRootCauseInstanceOf(IllegalArgumentException.class);
+
+            // the processor would never complete the future of a submitted task
+            assertThrows(TaskRejectedException.class, () -> executor.submit(() -> {}));
+            assertThrows(TaskRejectedException.class, () -> executor.submitCompletable(() -> "done"));
+            assertThat(executor.getBufferedCount()).isEqualTo(0);
+        }
+        finally {
+            executor.shutdown();
+        }
+        BatchingTaskExecutor tasksOnly = newBatchingPool(1, Duration.ofHours(1L), null);
+        try {
+            assertThrows(IllegalStateException.class, () -> tasksOnly.submitItem("a"));
+        }
+        finally {
+            tasksOnly.shutdown();
+        }
+    }
+
+    @Test
+    public void testDiscardPolicyStillRejectsBatches() throws Exception {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        PoolConfig config = new PoolConfig();
+        config.setType(ExecutorType.BATCHING);
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        config.setQueueCapacity(1);
+        config.setRejectedExecutionHandler("DiscardPolicy");
+        config.getBatch().setSize(1);
+        BatchingTaskExecutor executor =
+                (BatchingTaskExecutor) createExecutors(Map.of("discardPool", config), context).get("discardPool");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> block(release));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getWorkers().getActiveCount() == 1);
+            Future<?> queued = executor.submit(() -> {});
+
+            // a discarded batch would leave its future incomplete
+            FutureTask<Object> rejected = new FutureTask<>(() -> {}, null);
+            assertThrows(TaskRejectedException.class, () -> executor.execute(rejected));
+            assertThat(rejected.isCancelled()).isTrue();
+            assertThat(executor.getStats().getRejectedCount()).isEqualTo(1L);
+            release.countDown();
+            queued.get(5, TimeUnit.SECONDS);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static BatchingTaskExecutor newBatchingPool(
+            int size, Duration maxDelay, TaskBatchProcessor<?> processor) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        if (processor != null)
+            context.registerBean("batchProcessor", TaskBatchProcessor.class, () -> processor);
+        context.refresh();
+
+        PoolConfig config = new PoolConfig();
+        config.setType(ExecutorType.BATCHING);
+        config.setCoreSize(2);
+        config.setWaitForTasksToCompleteShutdown(true);
+        config.getBatch().setSize(size);
+        config.getBatch().setMaxDelay(maxDelay);
+        config.getBatch().setProcessor((processor != null) ? "batchProcessor" : null);
+        return (BatchingTaskExecutor) createExecutors(Map.of("batchPool", config), context).get("batchPool");
+    }
+}
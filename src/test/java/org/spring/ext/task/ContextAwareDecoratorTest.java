@@ -0,0 +1,114 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.web.context.request.RequestContextHolder.getRequestAttributes;
+import static org.springframework.web.context.request.RequestContextHolder.resetRequestAttributes;
+import static org.springframework.web.context.request.RequestContextHolder.setRequestAttributes;
+
+/**
+ * Verifies context propagation by {@link ContextAwareDecorator}.
+ *
+ * @author Kevan Simpson
+ */
+public class ContextAwareDecoratorTest {
+    private final ContextAwareDecorator decorator = new ContextAwareDecorator(Arrays.stream(PropagatedContext.values())
+            .map(PropagatedContext::propagator)
+            .collect(Collectors.toList()));
+
+    @AfterEach
+    public void tearDown() {
+        resetRequestAttributes();
+        ThreadContext.clearMap();
+        LocaleContextHolder.resetLocaleContext();
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testNoContextFastPath() {
+        Runnable task = () -> {};
+        assertThat(decorator.decorate(task)).isSameAs(task);
+        assertThat(new ContextAwareDecorator().decorate(task)).isSameAs(task);
+    }
+
+    @Test
+    public void testPropagatesAllContexts() throws Exception {
+        RequestAttributes attributes = Mockito.mock(RequestAttributes.class);
+        setRequestAttributes(attributes);
+        ThreadContext.put("traceId", "abc");
+        LocaleContextHolder.setLocale(Locale.CANADA_FRENCH);
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user", "pw"));
+
+        Runnable decorated = decorator.decorate(() -> {
+            assertThat(getRequestAttributes()).isSameAs(attributes);
+            assertThat(ThreadContext.get("traceId")).isEqualTo("abc");
+            assertThat(LocaleContextHolder.getLocale()).isEqualTo(Locale.CANADA_FRENCH);
+            assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("user");
+        });
+        CompletableFuture.runAsync(decorated, task -> new Thread(task).start())
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRestoresCallerContext() {
+        ContextAwareDecorator mdcDecorator =
+                new ContextAwareDecorator(List.of(PropagatedContext.MDC.propagator()));
+        ThreadContext.put("traceId", "submitter");
+        Runnable decorated = mdcDecorator.decorate(() -> ThreadContext.put("traceId", "task"));
+
+        // run inline, as with CallerRunsPolicy, and on a worker with its own context
+        decorated.run();
+        assertThat(ThreadContext.get("traceId")).isEqualTo("submitter");
+        ThreadContext.put("traceId", "worker");
+        decorated.run();
+        assertThat(ThreadContext.get("traceId")).isEqualTo("worker");
+    }
+
+    @Test
+    public void testKeepsWorkerSecurityContext() {
+        ContextAwareDecorator securityDecorator =
+                new ContextAwareDecorator(List.of(PropagatedContext.SECURITY_CONTEXT.propagator()));
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("user", "pw"));
+        Runnable decorated = securityDecorator.decorate(() ->
+                assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("user"));
+
+        // the worker's empty context is restored rather than cleared and created again for the next task
+        SecurityContextHolder.clearContext();
+        SecurityContext worker = SecurityContextHolder.getContext();
+        decorated.run();
+        assertThat(SecurityContextHolder.getContext()).isSameAs(worker);
+        assertThat(worker.getAuthentication()).isNull();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.sleep;
+
+/**
+ * Verifies that a {@link DeadlineTask} is skipped once it expires in the queue.
+ *
+ * @author Kevan Simpson
+ */
+public class DeadlineTaskTest {
+
+    @Test
+    public void testExpiredTasksAreSkipped() throws Exception {
+        PoolTaskExecutor pool = newPool();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        try {
+            pool.execute(() -> block(release));
+            CompletableFuture<Integer> expired =
+                    DeadlineTask.submit(pool, Duration.ofMillis(20L), calls::incrementAndGet);
+            CompletableFuture<Integer> cancelled =
+                    DeadlineTask.submit(pool, Duration.ofSeconds(10L), calls::incrementAndGet);
+            CompletableFuture<Integer> live =
+                    DeadlineTask.submit(pool, Duration.ofSeconds(10L), calls::incrementAndGet);
+            cancelled.cancel(false);
+            sleep(50);
+
+            release.countDown();
+            assertThat(live.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> expired.get(5, TimeUnit.SECONDS));
+            assertThat(ex).hasCauseInstanceOf(TaskExpiredException.class);
+            assertThat(cancelled).isCancelled();
+            assertThat(calls.get()).isEqualTo(1);
+            assertThat(pool.getStats().getExpiredCount()).isEqualTo(2L);
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTaskFailure() {
+        PoolTaskExecutor pool = newPool();
+        try {
+            CompletableFuture<Void> failed = DeadlineTask.submit(pool, Duration.ofSeconds(10L), (Runnable) () -> {
+                throw new IllegalStateException("failed");
+            });
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertThat(ex).hasCauseInstanceOf(IllegalStateException.class);
+            assertThat(pool.getStats().getExpiredCount()).isEqualTo(0L);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static PoolTaskExecutor newPool() {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        return (PoolTaskExecutor) createExecutors(Map.of("deadlinePool", config)).get("deadlinePool");
+    }
+}
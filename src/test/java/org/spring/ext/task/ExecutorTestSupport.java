@@ -18,12 +18,19 @@ package org.spring.ext.task;
 
 import jakarta.annotation.Nonnull;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskDecorator;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,6 +43,104 @@ import static java.util.concurrent.CompletableFuture.completedFuture;
  * @author Kevan Simpson
  */
 public class ExecutorTestSupport {
+    /**
+     * Creates executors outside a Spring Boot application, using an empty application context.
+     *
+     * @param pools The pool configurations mapped by executor name.
+     * @return a map of executors mapped by configured name.
+     */
+    public static Map<String, AsyncTaskExecutor> createExecutors(Map<String, PoolConfig> pools) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        return createExecutors(pools, context);
+    }
+
+    /**
+     * Creates executors outside a Spring Boot application, using the given refreshed application context.
+     *
+     * @param pools The pool configurations mapped by executor name.
+     * @param context The application context providing referenced beans.
+     * @return a map of executors mapped by configured name.
+     */
+    public static Map<String, AsyncTaskExecutor> createExecutors(
+            Map<String, PoolConfig> pools, GenericApplicationContext context) {
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.getPools().putAll(pools);
+        properties.setShutdown(new ShutdownConfig());
+        return createExecutors(properties, context);
+    }
+
+    /**
+     * Creates executors outside a Spring Boot application, using the given properties and refreshed context.
+     *
+     * @param properties The configuration properties for executor beans.
+     * @param context The application context providing referenced beans.
+     * @return a map of executors mapped by configured name.
+     */
+    public static Map<String, AsyncTaskExecutor> createExecutors(
+            MultipleExecutorProperties properties, GenericApplicationContext context) {
+        DefaultListableBeanFactory registry = context.getDefaultListableBeanFactory();
+        return MultipleExecutorSupport.createMultipleTaskExecutors(
+                properties,
+                registry.getBeanProvider(ThreadPoolTaskExecutorCustomizer.class),
+                registry.getBeanProvider(TaskDecorator.class),
+                registry,
+                context);
+    }
+
+    /**
+     * Shuts the given executors down, e.g. once a test has released its blocked tasks.
+     *
+     * @param executors The executors mapped by configured name.
+     */
+    public static void shutdown(Map<String, AsyncTaskExecutor> executors) {
+        executors.values().forEach(ExecutorTestSupport::shutdown);
+    }
+
+    /**
+     * Shuts the given executor down if it is a {@link DisposableBean}.
+     *
+     * @param executor The executor to shut down.
+     */
+    public static void shutdown(AsyncTaskExecutor executor) {
+        if (executor instanceof DisposableBean bean) {
+            try {
+                bean.destroy();
+            }
+            catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    /**
+     * Waits for the latch to be released, restoring the interrupt flag if interrupted.
+     *
+     * @param latch The latch to wait on.
+     */
+    public static void block(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sleeps for the given time, restoring the interrupt flag if interrupted.
+     *
+     * @param millis The time to sleep in milliseconds.
+     */
+    public static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Utility with test method annotated with {@link Async} and configured to use &quot;testPoolOne&quot;.
      */
@@ -70,4 +175,20 @@ public class ExecutorTestSupport {
             return runnable;
         }
     }
+
+    /**
+     * Test task decorator which appends its name to a shared list when its task runs.
+     */
+    @AllArgsConstructor
+    public static class NamedTaskDecorator implements TaskDecorator {
+        private final String name;
+        private final List<String> runs;
+        @Override @Nonnull
+        public Runnable decorate(@Nonnull Runnable runnable) {
+            return () -> {
+                runs.add(name);
+                runnable.run();
+            };
+        }
+    }
 }
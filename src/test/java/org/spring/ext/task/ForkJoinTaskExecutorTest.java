@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.spring.ext.task.ExecutorTestSupport.TestTaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.Map;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+
+/**
+ * Verifies behavior of {@link ForkJoinTaskExecutor}.
+ *
+ * @author Kevan Simpson
+ */
+public class ForkJoinTaskExecutorTest {
+
+    @Test
+    public void testForkJoinType() throws Exception {
+        PoolConfig config = new PoolConfig();
+        config.setType(ExecutorType.FORK_JOIN);
+        config.setParallelism(3);
+        config.setAsyncMode(true);
+        ForkJoinTaskExecutor executor =
+                (ForkJoinTaskExecutor) createExecutors(Map.of("forkJoinPool", config)).get("forkJoinPool");
+        try {
+            assertThat(executor.getForkJoinPool().getParallelism()).isEqualTo(3);
+            assertThat(executor.getForkJoinPool().getAsyncMode()).isTrue();
+
+            // recursive splitting forks onto the worker's own pool
+            long sum = executor.submit(() -> new SumTask(1, 100_000).invoke()).get(5, TimeUnit.SECONDS);
+            assertThat(sum).isEqualTo(5_000_050_000L);
+            assertThat(executor.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS))
+                    .startsWith("forkJoinPool-task-");
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getStats().getExecutedCount() == 2L);
+        }
+        finally {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    public void testDecoratorAndRejection() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        ForkJoinTaskExecutor executor = new ForkJoinTaskExecutor("decorated-", 1, false);
+        executor.setTaskDecorator(new TestTaskDecorator(counter));
+        try {
+            assertThat(executor.submit(() -> "done").get(5, TimeUnit.SECONDS)).isEqualTo("done");
+            assertThat(counter.get()).isEqualTo(1);
+        }
+        finally {
+            executor.destroy();
+        }
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {}));
+        assertThat(executor.getStats().getRejectedCount()).isEqualTo(1L);
+    }
+
+    private static class SumTask extends RecursiveTask<Long> {
+        private final long from;
+        private final long to;
+
+        SumTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from < 1_000) {
+                long sum = 0;
+                for (long i = from; i <= to; i++)
+                    sum += i;
+                return sum;
+            }
+            long mid = (from + to) / 2;
+            SumTask left = new SumTask(from, mid);
+            left.fork();
+            return new SumTask(mid + 1, to).compute() + left.join();
+        }
+    }
+}
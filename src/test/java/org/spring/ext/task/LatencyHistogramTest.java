@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Verifies bucketing and percentiles of {@link LatencyHistogram}.
+ *
+ * @author Kevan Simpson
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBoundaries() {
+        LongStream.of(0L, 1L, 31L, 32L, 63L, 64L, 1_000L, 123_456_789L, Long.MAX_VALUE).forEach(value -> {
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestValueOf(index);
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            assertThat((double) (highest - value)).isLessThanOrEqualTo(value / 32.0);
+            if (index > 0)
+                assertThat(LatencyHistogram.highestValueOf(index - 1)).isLessThan(value);
+        });
+        assertThat(LatencyHistogram.indexOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.SUB_BUCKET_COUNT * 59 - 1);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.getValueAtPercentile(99.0)).isEqualTo(0L);
+        for (long micros = 1; micros <= 1_000; micros++)
+            histogram.record(micros * 1_000L);
+        histogram.record(-1L);
+
+        assertThat(histogram.getCount()).isEqualTo(1_001L);
+        assertThat((double) histogram.getValueAtPercentile(50.0)).isCloseTo(500_000.0, within(500_000.0 / 32));
+        assertThat((double) histogram.getValueAtPercentile(99.0)).isCloseTo(990_000.0, within(990_000.0 / 32));
+        assertThat(histogram.getValueAtPercentile(0.0)).isEqualTo(0L);
+
+        LatencyPercentiles percentiles = LatencyPercentiles.of(histogram);
+        assertThat(percentiles.getCount()).isEqualTo(1_001L);
+        assertThat(percentiles.getP999()).isGreaterThanOrEqualTo(Duration.ofNanos(999_000L));
+        histogram.reset();
+        assertThat(histogram.getCount()).isEqualTo(0L);
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.awaitility.Awaitility.await;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies deferred creation of pools by {@link LazyTaskExecutor}.
+ *
+ * @author Kevan Simpson
+ */
+public class LazyTaskExecutorTest {
+
+    @Test
+    public void testLazyPools() throws Exception {
+        PoolConfig hot = new PoolConfig();
+        hot.setLazy(false);
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.setLazy(true);
+        properties.setShutdown(new ShutdownConfig());
+        properties.getPools().put("coldPool", new PoolConfig());
+        properties.getPools().put("hotPool", hot);
+        Map<String, AsyncTaskExecutor> executors = createExecutors(properties);
+        try {
+            assertThat(executors.get("hotPool")).isInstanceOf(PoolTaskExecutor.class);
+
+            LazyTaskExecutor cold = (LazyTaskExecutor) executors.get("coldPool");
+            assertThat(cold.getIfInitialized()).isNull();
+            assertThat(cold.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS))
+                    .startsWith("coldPool-task-");
+            assertThat(cold.getIfInitialized()).isSameAs(cold.getExecutor());
+            assertThat(cold.getExecutor().getStats()).isSameAs(cold.getStats());
+            await().atMost(5, TimeUnit.SECONDS).until(() -> cold.getStats().getExecutedCount() == 1L);
+        }
+        finally {
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testMetricsBoundOnFirstUse() throws Exception {
+        PoolConfig config = new PoolConfig();
+        config.setLazy(true);
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.setShutdown(new ShutdownConfig());
+        properties.getPools().put("lazyPool", config);
+        Map<String, AsyncTaskExecutor> executors = createExecutors(properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        try {
+            new MultipleExecutorMetrics(executors).bindTo(registry);
+            assertThat(registry.find("executor.pool.size").tag("name", "lazyPool").gauge()).isNull();
+            assertThat(registry.find("executor.rejected").tag("name", "lazyPool").functionCounter()).isNotNull();
+
+            executors.get("lazyPool").submit(() -> {}).get(5, TimeUnit.SECONDS);
+            assertThat(registry.get("executor.pool.size").tag("name", "lazyPool").gauge().value()).isEqualTo(1.0);
+        }
+        finally {
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testSubmitKeepsPriority() throws Exception {
+        PoolConfig config = new PoolConfig();
+        config.setLazy(true);
+        config.setQueueType(QueueType.PRIORITY);
+        config.setQueueCapacity(10);
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.setShutdown(new ShutdownConfig());
+        properties.getPools().put("lazyPool", config);
+        LazyTaskExecutor lazy = (LazyTaskExecutor) createExecutors(properties).get("lazyPool");
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        try {
+            lazy.execute(() -> block(release));
+            Future<?> low = lazy.submit(PriorityTask.of(-1, () -> order.add("low")));
+            Future<Boolean> high = lazy.submit(PriorityTask.callable(5, () -> order.add("high")));
+            CompletableFuture<Void> higher = lazy.submitCompletable(PriorityTask.of(9, () -> order.add("higher")));
+            CompletableFuture<Boolean> highest =
+                    lazy.submitCompletable(PriorityTask.callable(10, () -> order.add("highest")));
+            release.countDown();
+            CompletableFuture.allOf(higher, highest).get(5, TimeUnit.SECONDS);
+            high.get(5, TimeUnit.SECONDS);
+            low.get(5, TimeUnit.SECONDS);
+            assertThat(order).containsExactly("highest", "higher", "high", "low");
+        }
+        finally {
+            release.countDown();
+            lazy.destroy();
+        }
+    }
+
+    @Test
+    public void testNotCreatedAfterDestroy() {
+        PoolConfig config = new PoolConfig();
+        config.setLazy(true);
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.setShutdown(new ShutdownConfig());
+        properties.getPools().put("lazyPool", config);
+        LazyTaskExecutor lazy = (LazyTaskExecutor) createExecutors(properties).get("lazyPool");
+        lazy.destroy();
+
+        assertThrows(TaskRejectedException.class, () -> lazy.execute(() -> {}));
+        assertThrows(TaskRejectedException.class, () -> lazy.submit(() -> {}));
+        assertThat(lazy.getIfInitialized()).isNull();
+    }
+
+    private static Map<String, AsyncTaskExecutor> createExecutors(MultipleExecutorProperties properties) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        return ExecutorTestSupport.createExecutors(properties, context);
+    }
+}
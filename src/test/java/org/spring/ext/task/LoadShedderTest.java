@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.sleep;
+
+/**
+ * Verifies queue-delay load shedding by a {@link LoadShedder} and {@link PoolTaskExecutor#tryExecute(Runnable)}.
+ *
+ * @author Kevan Simpson
+ */
+public class LoadShedderTest {
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(5L);
+
+    @Test
+    public void testStandingQueue() {
+        LoadShedder shedder = new LoadShedder(Duration.ofNanos(TARGET), Duration.ofMillis(20L));
+        shedder.onDequeue(TARGET * 2);
+        assertThat(shedder.isDropping()).isFalse();
+        // a burst which drains within the interval is absorbed
+        shedder.onDequeue(TARGET / 2);
+        sleep(30);
+        shedder.onDequeue(TARGET * 2);
+        assertThat(shedder.isDropping()).isFalse();
+
+        sleep(30);
+        shedder.onDequeue(TARGET * 2);
+        assertThat(shedder.isDropping()).isTrue();
+        shedder.onDequeue(TARGET / 2);
+        assertThat(shedder.isDropping()).isFalse();
+    }
+
+    @Test
+    public void testControlLaw() {
+        long interval = TimeUnit.MILLISECONDS.toNanos(20L);
+        LoadShedder shedder = new LoadShedder(Duration.ofNanos(TARGET), Duration.ofNanos(interval));
+        assertThat(shedder.shouldShed(System.nanoTime())).isFalse();
+        shedder.onDequeue(TARGET * 2);
+        sleep(30);
+        shedder.onDequeue(TARGET * 2);
+        assertThat(shedder.isDropping()).isTrue();
+
+        // one task is shed at once, the next an interval later, then interval / sqrt(2) after that
+        long now = System.nanoTime();
+        assertThat(shedder.shouldShed(now)).isTrue();
+        assertThat(shedder.shouldShed(now)).isFalse();
+        assertThat(shedder.shouldShed(now + interval - 1L)).isFalse();
+        now += interval;
+        assertThat(shedder.shouldShed(now)).isTrue();
+        long next = now + (long) (interval / Math.sqrt(2));
+        assertThat(shedder.shouldShed(next - 1L)).isFalse();
+        assertThat(shedder.shouldShed(next)).isTrue();
+
+        shedder.onDequeue(TARGET / 2);
+        assertThat(shedder.shouldShed(next + interval)).isFalse();
+    }
+
+    @Test
+    public void testPoolShedsLoad() {
+        PoolTaskExecutor pool = newPool(new PoolConfig());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> block(release));
+            for (int i = 0; i < 5; i++)
+                pool.execute(() -> sleep(50));
+            assertThat(pool.isOverloaded()).isFalse();
+
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).pollInterval(5, TimeUnit.MILLISECONDS).until(pool::isOverloaded);
+            assertThrows(TaskRejectedException.class, () -> pool.execute(() -> {}));
+            // the next task is only shed an interval later
+            assertThat(pool.tryExecute(() -> {})).isTrue();
+            assertThat(pool.getStats().getRejectedCount()).isEqualTo(1L);
+
+            // an empty queue no longer stands
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() == 7L);
+            assertThat(pool.isOverloaded()).isFalse();
+            assertThat(pool.tryExecute(() -> {})).isTrue();
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTryExecuteSkipsRejectionPolicy() {
+        PoolConfig config = new PoolConfig();
+        config.setRejectedExecutionHandler("CallerRunsPolicy");
+        config.setQueueCapacity(1);
+        PoolTaskExecutor pool = newPool(config);
+        AtomicInteger callerRuns = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertThat(pool.tryExecute(() -> block(release))).isTrue();
+            assertThat(pool.tryExecute(() -> {})).isTrue();
+            assertThat(pool.tryExecute(callerRuns::incrementAndGet)).isFalse();
+            assertThat(pool.getStats().getRejectedCount()).isEqualTo(1L);
+
+            pool.execute(callerRuns::incrementAndGet);
+            assertThat(callerRuns.get()).isEqualTo(1);
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    private static PoolTaskExecutor newPool(PoolConfig config) {
+        SheddingConfig shedding = new SheddingConfig();
+        shedding.setInterval(Duration.ofMillis(20L));
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        config.setShedding(shedding);
+        return (PoolTaskExecutor) createExecutors(Map.of("sheddingPool", config)).get("sheddingPool");
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.spring.ext.task;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
@@ -43,6 +44,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.springframework.web.context.request.RequestContextHolder.getRequestAttributes;
@@ -114,6 +116,11 @@ public class MultipleExecutorAutoConfigurationTest {
                 });
         // default + 6 yaml-defined
         assertThat(applicationContext.getBeansOfType(AsyncTaskExecutor.class).size()).isEqualTo(7);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        applicationContext.getBean(MultipleExecutorMetrics.class).bindTo(registry);
+        assertThat(registry.get("executor.pool.core").tag("name", "testPoolOne").gauge().value()).isEqualTo(2.0);
+        assertThat(applicationContext.getBean(MultipleExecutorEndpoint.class).executors())
+                .containsOnlyKeys(executorsMap.keySet());
 
         AtomicInteger counter = applicationContext.getBean("counter", AtomicInteger.class);
         PoolHolder holder = applicationContext.getBean(PoolHolder.class);
@@ -152,12 +159,32 @@ public class MultipleExecutorAutoConfigurationTest {
         assertThrows(ExecutionException.class, () -> two.submit(hasAttributes).get());
         assertThrows(ExecutionException.class, () -> three.submit(hasAttributes).get());
 
+        // pool one names only its own decorator, pool two applies all decorator beans
         setRequestAttributes(Mockito.mock(RequestAttributes.class));
         assertThrows(ExecutionException.class, () -> one.submit(hasAttributes).get());
-        assertThrows(ExecutionException.class, () -> two.submit(hasAttributes).get());
-        assertDoesNotThrow(() -> three.submit(hasAttributes));
+        assertDoesNotThrow(() -> two.submit(hasAttributes).get());
+        assertDoesNotThrow(() -> three.submit(hasAttributes).get());
         assertDoesNotThrow(() -> one.submit(noAttributes).get());
-        assertDoesNotThrow(() -> two.submit(noAttributes).get());
+        assertThrows(ExecutionException.class, () -> two.submit(noAttributes).get());
         assertThrows(ExecutionException.class, () -> three.submit(noAttributes).get());
     }
+
+    @Test @DirtiesContext
+    public void testLatenciesWithContextAwareDecorator() {
+        AsyncTaskExecutor three = applicationContext.getBean("testPoolThree", AsyncTaskExecutor.class);
+        MultipleExecutorLatencies latencies = applicationContext.getBean(MultipleExecutorLatencies.class);
+        assertThat(latencies.getQueueLatencies().keySet()).containsExactly(
+                "testPoolOne", "testPoolTwo", "testPoolThree", "testPoolFour", "testPoolFive", "testPoolSix");
+
+        setRequestAttributes(Mockito.mock(RequestAttributes.class));
+        assertDoesNotThrow(() -> three.submit(() -> assertThat(getRequestAttributes()).isNotNull()).get());
+        setRequestAttributes(null);
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+                latencies.getExecutionLatencies().get("testPoolThree").getCount() == 1L);
+        assertThat(latencies.getQueueLatencies().get("testPoolThree").getCount()).isEqualTo(1L);
+        assertThat(latencies.getQueueLatencies().get("testPoolFour").getCount()).isEqualTo(0L);
+
+        latencies.reset("testPoolThree");
+        assertThat(latencies.getQueueLatencies().get("testPoolThree").getCount()).isEqualTo(0L);
+    }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.spring.ext.task.MultipleExecutorEndpoint.BusyWorker;
+import org.spring.ext.task.MultipleExecutorEndpoint.PoolState;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies the pool state reported by {@link MultipleExecutorEndpoint}.
+ *
+ * @author Kevan Simpson
+ */
+public class MultipleExecutorEndpointTest {
+    private Map<String, AsyncTaskExecutor> executors = Map.of();
+
+    @AfterEach
+    public void tearDown() {
+        shutdown(executors);
+    }
+
+    @Test
+    public void testPoolState() {
+        PoolConfig busy = new PoolConfig();
+        busy.setCoreSize(1);
+        busy.setMaxSize(1);
+        busy.setQueueCapacity(5);
+        PoolConfig lazy = new PoolConfig();
+        lazy.setLazy(true);
+        GenericApplicationContext context = newContext();
+        MultipleExecutorEndpoint endpoint = newEndpoint(Map.of("busyPool", busy, "lazyPool", lazy), context);
+
+        PoolTaskExecutor pool = context.getBean("busyPool", PoolTaskExecutor.class);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> block(release));
+            pool.execute(() -> {});
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getActiveCount() == 1);
+
+            Map<String, PoolState> states = endpoint.executors();
+            assertThat(states).containsOnlyKeys("busyPool", "lazyPool");
+            PoolState state = states.get("busyPool");
+            assertThat(state.getType()).isEqualTo(ExecutorType.THREAD_POOL);
+            assertThat(state.getConfigured()).isEqualTo(new MultipleExecutorEndpoint.PoolSizes(1, 1, 5));
+            assertThat(state.getActual()).isEqualTo(state.getConfigured());
+            assertThat(state.getPoolSize()).isEqualTo(1);
+            assertThat(state.getQueueSize()).isEqualTo(1);
+            assertThat(state.getOldestQueuedTaskAge()).isNotNull();
+            assertThat(state.getBusyWorkers()).hasSize(1);
+            BusyWorker worker = state.getBusyWorkers().get(0);
+            assertThat(worker.getThread()).startsWith("busyPool-task-");
+            assertThat(worker.getStackTrace()).anyMatch(frame -> frame.contains("ExecutorTestSupport.block"));
+            assertThat(states.get("lazyPool").isInitialized()).isFalse();
+            assertThat(endpoint.executor("unknownPool")).isNull();
+
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() == 2L);
+            state = endpoint.executor("busyPool");
+            assertThat(state.getBusyWorkers()).isEmpty();
+            assertThat(state.getOldestQueuedTaskAge()).isNull();
+            assertThat(state.getCompletedCount()).isEqualTo(2L);
+            assertThat(state.getThroughput()).isGreaterThan(0.0);
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testRefresh() {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(1);
+        config.setQueueCapacity(5);
+        GenericApplicationContext context = newContext();
+        MultipleExecutorEndpoint endpoint = newEndpoint(Map.of("refreshedPool", config), context);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("refreshed", Map.of(
+                "base.task.pools.refreshedPool.core-size", "2",
+                "base.task.pools.refreshedPool.queue-capacity", "5")));
+
+        assertThat(endpoint.refresh()).containsExactly("refreshedPool");
+        PoolState state = endpoint.executor("refreshedPool");
+        assertThat(state.getConfigured().getCoreSize()).isEqualTo(2);
+        assertThat(state.getActual().getCoreSize()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFinishedThreadsLeaveNoSlots() throws InterruptedException {
+        assertFinishedThreadsLeaveNoSlots(new RunningTasks());
+    }
+
+    @Test
+    public void testThreadPerTaskLeavesNoSlots() throws InterruptedException {
+        assertFinishedThreadsLeaveNoSlots(new RunningTasks(true));
+    }
+
+    private static void assertFinishedThreadsLeaveNoSlots(RunningTasks running) throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Thread blocked = new Thread(() -> track(running, () -> block(release)));
+        blocked.start();
+        try {
+            await().atMost(5, TimeUnit.SECONDS).until(() -> running.sample().size() == 1);
+            for (int i = 0; i < 100; i++) {
+                Thread finished = new Thread(() -> track(running, () -> {}));
+                finished.start();
+                finished.join();
+            }
+            assertThat(running.sample()).extracting(RunningTasks.RunningTask::getThread).containsExactly(blocked);
+        }
+        finally {
+            release.countDown();
+        }
+        blocked.join();
+        assertThat(running.sample()).isEmpty();
+    }
+
+    @Test
+    public void testThroughputWithoutReads() {
+        // throughput is counted as tasks finish, not from the counts seen by earlier reads
+        ExecutorStats stats = new ExecutorStats();
+        assertThat(stats.getThroughput()).isEqualTo(0.0);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            TimingDecorator decorator = new TimingDecorator(stats, null);
+            for (int i = 0; i < 20; i++)
+                pool.execute(decorator.decorate(() -> {}));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> stats.getExecutedCount() == 20L);
+            assertThat(stats.getThroughput()).isGreaterThan(0.0);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void track(RunningTasks running, Runnable task) {
+        if (running.started(task)) {
+            try {
+                task.run();
+            }
+            finally {
+                running.finished();
+            }
+        }
+    }
+
+    private static GenericApplicationContext newContext() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        return context;
+    }
+
+    private MultipleExecutorEndpoint newEndpoint(Map<String, PoolConfig> pools,
+            GenericApplicationContext context) {
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.getPools().putAll(pools);
+        properties.setShutdown(new ShutdownConfig());
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        this.executors = executors;
+        DefaultListableBeanFactory registry = context.getDefaultListableBeanFactory();
+        MultipleExecutorRefresher refresher = new MultipleExecutorRefresher(properties, executors,
+                registry.getBeanProvider(ThreadPoolTaskExecutorCustomizer.class),
+                registry.getBeanProvider(TaskDecorator.class),
+                registry.getBeanProvider(PoolChangeListener.class),
+                registry,
+                context);
+        return new MultipleExecutorEndpoint(executors, refresher);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies meters bound by {@link MultipleExecutorMetrics}.
+ *
+ * @author Kevan Simpson
+ */
+public class MultipleExecutorMetricsTest {
+
+    @Test
+    public void testThreadPoolMetrics() throws Exception {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        config.setQueueCapacity(1);
+        AsyncTaskExecutor executor = createExecutors(Map.of("metricPool", config)).get("metricPool");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new MultipleExecutorMetrics(Map.of("metricPool", executor)).bindTo(registry);
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            Future<?> running = executor.submit(() -> block(release));
+            Future<?> queued = executor.submit(() -> {});
+            assertThrows(TaskRejectedException.class, () -> executor.submit(() -> {}));
+            assertThat(gauge(registry, "executor.queued", "metricPool")).isEqualTo(1.0);
+            assertThat(gauge(registry, "executor.queue.remaining", "metricPool")).isEqualTo(0.0);
+            assertThat(registry.get("executor.rejected").tag("name", "metricPool").functionCounter().count())
+                    .isEqualTo(1.0);
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+            FunctionTimer idle = registry.get("executor.idle").tag("name", "metricPool").functionTimer();
+            assertThat(idle.count()).isEqualTo(2.0);
+            assertThat(idle.totalTime(TimeUnit.NANOSECONDS)).isGreaterThan(0.0);
+            FunctionTimer execution = registry.get("executor").tag("name", "metricPool").functionTimer();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> execution.count() == 2.0);
+            assertThat(registry.get("executor.idle.percentile").tags("name", "metricPool", "phi", "0.99")
+                    .timeGauge().value(TimeUnit.NANOSECONDS)).isGreaterThan(0.0);
+        }
+        finally {
+            release.countDown();
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    public void testVirtualMetrics() throws Exception {
+        VirtualTaskExecutor executor = new VirtualTaskExecutor(Executors.defaultThreadFactory(), 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new MultipleExecutorMetrics(Map.of("virtualPool", executor)).bindTo(registry);
+
+        executor.submit(() -> "done").get(5, TimeUnit.SECONDS);
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+                registry.get("executor.completed").tag("name", "virtualPool").functionCounter().count() == 1.0);
+        assertThat(gauge(registry, "executor.active", "virtualPool")).isEqualTo(0.0);
+        assertThat(gauge(registry, "executor.queued", "virtualPool")).isEqualTo(0.0);
+        assertThat(registry.get("executor").tag("name", "virtualPool").functionTimer().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void testForkJoinMetrics() throws Exception {
+        ForkJoinTaskExecutor executor = new ForkJoinTaskExecutor("forkJoinPool-task-", 2, false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new MultipleExecutorMetrics(Map.of("forkJoinPool", executor)).bindTo(registry);
+
+        try {
+            executor.submit(() -> "done").get(5, TimeUnit.SECONDS);
+            assertThat(gauge(registry, "executor.queued", "forkJoinPool")).isEqualTo(0.0);
+            assertThat(gauge(registry, "executor.running", "forkJoinPool")).isGreaterThanOrEqualTo(0.0);
+            assertThat(registry.get("executor.steals").tag("name", "forkJoinPool").functionCounter()).isNotNull();
+            await().atMost(5, TimeUnit.SECONDS).until(() ->
+                    registry.get("executor").tag("name", "forkJoinPool").functionTimer().count() == 1.0);
+        }
+        finally {
+            executor.destroy();
+        }
+    }
+
+    private static double gauge(SimpleMeterRegistry registry, String name, String poolName) {
+        return registry.get(name).tag("name", poolName).gauge().value();
+    }
+}
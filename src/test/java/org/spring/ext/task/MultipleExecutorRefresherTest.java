@@ -0,0 +1,282 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies that {@link MultipleExecutorRefresher} applies refreshed configuration to running executors.
+ *
+ * @author Kevan Simpson
+ */
+public class MultipleExecutorRefresherTest {
+
+    @Test
+    public void testReconfigureRunningPool() {
+        GenericApplicationContext context = newContext();
+        MultipleExecutorProperties properties = newProperties(Map.of("livePool", poolConfig(1, 1, 1)));
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        MultipleExecutorRefresher refresher = newRefresher(properties, executors, context);
+        PoolTaskExecutor pool = (PoolTaskExecutor) executors.get("livePool");
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            PoolConfig updated = poolConfig(2, 4, 3);
+            updated.setKeepAlive(Duration.ofSeconds(5L));
+            updated.setRejectedExecutionHandler("CallerRunsPolicy");
+            assertThat(refresher.refresh(newProperties(Map.of("livePool", updated)))).containsExactly("livePool");
+            assertThat(executors.get("livePool")).isSameAs(pool);
+            assertThat(pool.getCorePoolSize()).isEqualTo(2);
+            assertThat(pool.getMaxPoolSize()).isEqualTo(4);
+            assertThat(pool.getKeepAliveSeconds()).isEqualTo(5);
+
+            for (int i = 0; i < 7; i++)
+                pool.execute(() -> block(release));
+            assertThat(pool.getPoolSize()).isEqualTo(4);
+            assertThat(pool.getQueueSize()).isEqualTo(3);
+            // the caller runs a rejected task
+            AtomicInteger callerRuns = new AtomicInteger();
+            Thread caller = Thread.currentThread();
+            pool.execute(() -> {
+                if (Thread.currentThread() == caller)
+                    callerRuns.incrementAndGet();
+            });
+            assertThat(callerRuns.get()).isEqualTo(1);
+
+            // shrinking keeps queued tasks, refusing new ones until enough are taken
+            assertThat(refresher.refresh(newProperties(Map.of("livePool", poolConfig(1, 4, 1)))))
+                    .containsExactly("livePool");
+            assertThat(pool.getQueueSize()).isEqualTo(3);
+            assertThat(pool.getThreadPoolExecutor().getQueue().remainingCapacity()).isEqualTo(0);
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() == 8L);
+            assertThat(pool.getThreadPoolExecutor().getQueue().remainingCapacity()).isEqualTo(1);
+            assertThat(pool.getThreadPoolExecutor().getRejectedExecutionHandler())
+                    .isNotInstanceOf(ThreadPoolExecutor.CallerRunsPolicy.class);
+            assertThat(refresher.refresh(newProperties(Map.of("livePool", poolConfig(1, 4, 1))))).isEmpty();
+        }
+        finally {
+            release.countDown();
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testAddAndRemovePools() {
+        GenericApplicationContext context = newContext();
+        MultipleExecutorProperties properties = newProperties(Map.of("oldPool", poolConfig(1, 1, 10)));
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        MultipleExecutorMetrics metrics = new MultipleExecutorMetrics(executors);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+        context.getBeanFactory().registerSingleton("multipleExecutorMetrics", metrics);
+        MultipleExecutorRefresher refresher = newRefresher(properties, executors, context);
+        PoolTaskExecutor oldPool = (PoolTaskExecutor) executors.get("oldPool");
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        oldPool.execute(() -> block(release));
+        for (int i = 0; i < 3; i++)
+            oldPool.execute(ran::incrementAndGet);
+        Thread releaser = new Thread(() -> {
+            ExecutorTestSupport.sleep(100L);
+            release.countDown();
+        });
+        releaser.start();
+
+        try {
+            Set<String> changed = refresher.refresh(newProperties(Map.of("newPool", poolConfig(2, 2, 10))));
+            assertThat(changed).containsExactly("oldPool", "newPool");
+            assertThat(executors).containsOnlyKeys("newPool");
+            assertThat(context.containsBean("oldPool")).isFalse();
+            assertThat(context.getBean("newPool")).isSameAs(executors.get("newPool"));
+            // queued tasks of the removed pool still run
+            await().atMost(5, TimeUnit.SECONDS).until(() -> ran.get() == 3);
+            assertThat(oldPool.getThreadPoolExecutor().isShutdown()).isTrue();
+
+            assertThat(registry.find("executor.pool.core").tag("name", "oldPool").gauge()).isNull();
+            assertThat(registry.get("executor.pool.core").tag("name", "newPool").gauge().value()).isEqualTo(2.0);
+        }
+        finally {
+            release.countDown();
+            shutdown(oldPool);
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testRefreshFromEnvironment() throws Exception {
+        GenericApplicationContext context = newContext();
+        PoolConfig lazy = poolConfig(1, 1, 10);
+        lazy.setLazy(true);
+        MultipleExecutorProperties properties = newProperties(Map.of("lazyPool", lazy));
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        MultipleExecutorRefresher refresher = newRefresher(properties, executors, context);
+
+        try {
+            context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("refreshed", Map.of(
+                    "base.task.pools.lazyPool.lazy", "true",
+                    "base.task.pools.lazyPool.core-size", "3",
+                    "base.task.pools.lazyPool.max-size", "3",
+                    "base.task.pools.lazyPool.queue-capacity", "10")));
+            assertThat(refresher.refresh()).containsExactly("lazyPool");
+
+            // applied once the lazy pool is created
+            LazyTaskExecutor executor = (LazyTaskExecutor) executors.get("lazyPool");
+            assertThat(executor.getIfInitialized()).isNull();
+            executor.submit(() -> {}).get(5, TimeUnit.SECONDS);
+            assertThat(executor.getExecutor().getCorePoolSize()).isEqualTo(3);
+            assertThat(executor.getExecutor().getMaxPoolSize()).isEqualTo(3);
+        }
+        finally {
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testInvalidRefreshChangesNothing() {
+        GenericApplicationContext context = newContext();
+        MultipleExecutorProperties properties = newProperties(Map.of(
+                "firstPool", poolConfig(1, 1, 1), "secondPool", poolConfig(1, 1, 1), "thirdPool", poolConfig(1, 1, 1)));
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        MultipleExecutorRefresher refresher = newRefresher(properties, executors, context);
+        try {
+            PoolConfig unknownPolicy = poolConfig(2, 2, 1);
+            unknownPolicy.setRejectedExecutionHandler("missingPolicy");
+            // the valid change to the first pool and removal of the third are not applied either
+            assertThrows(IllegalArgumentException.class, () -> refresher.refresh(newProperties(Map.of(
+                    "firstPool", poolConfig(2, 2, 1), "secondPool", poolConfig(4, 2, 1)))));
+            assertThrows(IllegalArgumentException.class, () -> refresher.refresh(newProperties(Map.of(
+                    "firstPool", poolConfig(2, 2, 1), "secondPool", unknownPolicy))));
+            assertThat(executors).containsOnlyKeys("firstPool", "secondPool", "thirdPool");
+            assertThat(((PoolTaskExecutor) executors.get("firstPool")).getCorePoolSize()).isEqualTo(1);
+            assertThat(refresher.getPoolConfigs().get("firstPool")).isEqualTo(poolConfig(1, 1, 1));
+        }
+        finally {
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testWorkerPoolsKeepAbortPolicy() {
+        GenericApplicationContext context = newContext();
+        PoolConfig striped = poolConfig(1, 1, 1);
+        striped.setType(ExecutorType.STRIPED);
+        MultipleExecutorProperties properties = newProperties(Map.of("stripedPool", striped));
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        MultipleExecutorRefresher refresher = newRefresher(properties, executors, context);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            PoolConfig updated = poolConfig(2, 2, 1);
+            updated.setType(ExecutorType.STRIPED);
+            updated.setRejectedExecutionHandler("DiscardPolicy");
+            assertThat(refresher.refresh(newProperties(Map.of("stripedPool", updated)))).containsExactly("stripedPool");
+            PoolTaskExecutor workers = ((StripedTaskExecutor) executors.get("stripedPool")).getWorkers();
+            assertThat(workers.getCorePoolSize()).isEqualTo(2);
+
+            // two running and one queued, so the workers reject rather than discard
+            for (int i = 0; i < 3; i++)
+                workers.execute(() -> block(release));
+            assertThrows(TaskRejectedException.class, () -> workers.execute(() -> {}));
+        }
+        finally {
+            release.countDown();
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testAppliedConfigsAreNotShared() {
+        GenericApplicationContext context = newContext();
+        PoolConfig bound = poolConfig(1, 1, 1);
+        bound.setWatchdog(new WatchdogConfig());
+        bound.setShedding(new SheddingConfig());
+        MultipleExecutorProperties properties = newProperties(Map.of("boundPool", bound));
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        MultipleExecutorRefresher refresher = newRefresher(properties, executors, context);
+        try {
+            // a rebinder updating the bound pool in place would otherwise leave no change to refresh
+            bound.getWatchdog().setThreshold(Duration.ofSeconds(1L));
+            bound.getShedding().setTarget(Duration.ofMillis(1L));
+            bound.getBatch().setSize(1);
+            bound.getTaskDecorator().add("contextAwareDecorator");
+            PoolConfig applied = refresher.getPoolConfigs().get("boundPool");
+            assertThat(applied.getWatchdog().getThreshold()).isEqualTo(new WatchdogConfig().getThreshold());
+            assertThat(applied.getShedding().getTarget()).isEqualTo(new SheddingConfig().getTarget());
+            assertThat(applied.getBatch().getSize()).isEqualTo(new BatchConfig().getSize());
+            assertThat(applied.getTaskDecorator()).isEmpty();
+            assertThat(applied).isNotEqualTo(bound);
+        }
+        finally {
+            shutdown(executors);
+        }
+    }
+
+    private static GenericApplicationContext newContext() {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        return context;
+    }
+
+    private static MultipleExecutorRefresher newRefresher(MultipleExecutorProperties properties,
+            Map<String, AsyncTaskExecutor> executors, GenericApplicationContext context) {
+        DefaultListableBeanFactory registry = context.getDefaultListableBeanFactory();
+        return new MultipleExecutorRefresher(properties, executors,
+                registry.getBeanProvider(ThreadPoolTaskExecutorCustomizer.class),
+                registry.getBeanProvider(TaskDecorator.class),
+                registry.getBeanProvider(PoolChangeListener.class),
+                registry,
+                context);
+    }
+
+    private static MultipleExecutorProperties newProperties(Map<String, PoolConfig> pools) {
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.getPools().putAll(pools);
+        properties.setShutdown(new ShutdownConfig());
+        return properties;
+    }
+
+    private static PoolConfig poolConfig(int coreSize, int maxSize, int queueCapacity) {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(coreSize);
+        config.setMaxSize(maxSize);
+        config.setQueueCapacity(queueCapacity);
+        return config;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.task.ThreadPoolTaskExecutorCustomizer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies that {@link MultipleExecutorShutdown} drains pools phase by phase within a shared deadline.
+ *
+ * @author Kevan Simpson
+ */
+public class MultipleExecutorShutdownTest {
+    private Map<String, AsyncTaskExecutor> executors = Map.of();
+
+    @AfterEach
+    public void tearDown() {
+        shutdown(executors);
+    }
+
+    @Test
+    public void testUpstreamDrainsIntoDownstream() {
+        PoolConfig upstream = poolConfig(true, 0);
+        PoolConfig downstream = poolConfig(true, 1);
+        Pools shutdown = newShutdown(
+                Map.of("upstreamPool", upstream, "downstreamPool", downstream), Duration.ofSeconds(5L));
+        AsyncTaskExecutor upstreamPool = shutdown.executors.get("upstreamPool");
+        AsyncTaskExecutor downstreamPool = shutdown.executors.get("downstreamPool");
+
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int task = i;
+            upstreamPool.execute(() -> {
+                ExecutorTestSupport.sleep(20L);
+                downstreamPool.execute(() -> handled.add(task));
+            });
+        }
+
+        assertThat(shutdown.coordinator.shutdown()).isEmpty();
+        assertThat(handled).containsExactly(0, 1, 2, 3, 4);
+        assertThat(((PoolTaskExecutor) downstreamPool).getThreadPoolExecutor().isTerminated()).isTrue();
+    }
+
+    @Test
+    public void testPhasesAwaitedWithoutDeadline() {
+        PoolConfig lazy = poolConfig(true, 1);
+        lazy.setLazy(true);
+        Pools shutdown = newShutdown(Map.of("upstreamPool", poolConfig(true, 0), "downstreamPool",
+                poolConfig(true, 1), "lazyPool", lazy), null);
+        AsyncTaskExecutor upstreamPool = shutdown.executors.get("upstreamPool");
+        AsyncTaskExecutor downstreamPool = shutdown.executors.get("downstreamPool");
+
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int task = i;
+            upstreamPool.execute(() -> {
+                ExecutorTestSupport.sleep(20L);
+                downstreamPool.execute(() -> handled.add(task));
+            });
+        }
+
+        assertThat(shutdown.coordinator.shutdown()).isEmpty();
+        assertThat(handled).containsExactly(0, 1, 2, 3, 4);
+        LazyTaskExecutor lazyPool = (LazyTaskExecutor) shutdown.executors.get("lazyPool");
+        assertThrows(TaskRejectedException.class, () -> lazyPool.execute(() -> {}));
+        assertThat(lazyPool.getIfInitialized()).isNull();
+    }
+
+    @Test
+    public void testDroppedTasksCounted() {
+        Pools shutdown = newShutdown(
+                Map.of("gracefulPool", poolConfig(true, 0), "abruptPool", poolConfig(false, 0)),
+                Duration.ofSeconds(5L));
+        PoolTaskExecutor abruptPool = (PoolTaskExecutor) shutdown.executors.get("abruptPool");
+        PoolTaskExecutor gracefulPool = (PoolTaskExecutor) shutdown.executors.get("gracefulPool");
+
+        CountDownLatch running = new CountDownLatch(1);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        abruptPool.execute(() -> {
+            running.countDown();
+            try {
+                Thread.sleep(5000L);
+            }
+            catch (InterruptedException ex) {
+                interrupted.set(true);
+            }
+        });
+        for (int i = 0; i < 3; i++)
+            abruptPool.execute(() -> {});
+        for (int i = 0; i < 3; i++)
+            gracefulPool.execute(() -> ExecutorTestSupport.sleep(10L));
+        block(running);
+
+        assertThat(shutdown.coordinator.shutdown()).containsExactly(Map.entry("abruptPool", 3));
+        assertThat(interrupted.get()).isTrue();
+        assertThat(gracefulPool.getStats().getExecutedCount()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testStuckPoolStoppedAtDeadline() {
+        Pools shutdown = newShutdown(
+                Map.of("stuckPool", poolConfig(true, 0), "laterPool", poolConfig(true, 1)),
+                Duration.ofMillis(200L));
+        PoolTaskExecutor stuckPool = (PoolTaskExecutor) shutdown.executors.get("stuckPool");
+        PoolTaskExecutor laterPool = (PoolTaskExecutor) shutdown.executors.get("laterPool");
+
+        CountDownLatch never = new CountDownLatch(1);
+        try {
+            stuckPool.execute(() -> block(never));
+            stuckPool.execute(() -> {});
+            laterPool.execute(() -> block(never));
+
+            long started = System.nanoTime();
+            assertThat(shutdown.coordinator.shutdown())
+                    .containsExactly(Map.entry("stuckPool", 1));
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(2000L);
+            // the deadline is shared, so the later phase is stopped without waiting
+            assertThat(stuckPool.getThreadPoolExecutor().isShutdown()).isTrue();
+            assertThat(laterPool.getThreadPoolExecutor().isShutdown()).isTrue();
+        }
+        finally {
+            never.countDown();
+        }
+    }
+
+    @Test
+    public void testDroppedFuturesCancelled() {
+        Pools shutdown = newShutdown(Map.of("abruptPool", poolConfig(false, 0)), Duration.ofSeconds(5L));
+        PoolTaskExecutor abruptPool = (PoolTaskExecutor) shutdown.executors.get("abruptPool");
+
+        CountDownLatch running = new CountDownLatch(1);
+        abruptPool.execute(() -> {
+            running.countDown();
+            ExecutorTestSupport.sleep(5000L);
+        });
+        Future<?> queued = abruptPool.submit(() -> {});
+        block(running);
+
+        assertThat(shutdown.coordinator.shutdown()).containsExactly(Map.entry("abruptPool", 1));
+        assertThat(queued.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void testThrottledPoolsDrainPendingTasks() {
+        PoolConfig graceful = poolConfig(true, 0);
+        graceful.setMaxConcurrentTasks(1);
+        PoolConfig abrupt = poolConfig(false, 0);
+        abrupt.setMaxConcurrentTasks(1);
+        Pools shutdown = newShutdown(Map.of("gracefulPool", graceful, "abruptPool", abrupt), Duration.ofSeconds(5L));
+        ThrottledTaskExecutor gracefulPool = (ThrottledTaskExecutor) shutdown.executors.get("gracefulPool");
+        ThrottledTaskExecutor abruptPool = (ThrottledTaskExecutor) shutdown.executors.get("abruptPool");
+
+        List<Integer> handled = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int task = i;
+            gracefulPool.execute(() -> {
+                ExecutorTestSupport.sleep(20L);
+                handled.add(task);
+            });
+        }
+        CountDownLatch running = new CountDownLatch(1);
+        abruptPool.execute(() -> {
+            running.countDown();
+            ExecutorTestSupport.sleep(5000L);
+        });
+        Future<?> pending = abruptPool.submit(() -> {});
+        block(running);
+        assertThat(gracefulPool.getPendingCount()).isEqualTo(2);
+
+        assertThat(shutdown.coordinator.shutdown()).containsExactly(Map.entry("abruptPool", 1));
+        assertThat(handled).containsExactly(0, 1, 2);
+        assertThat(gracefulPool.getWorkers().getThreadPoolExecutor().isTerminated()).isTrue();
+        assertThat(pending.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void testStopsBeforeExecutorLifecycle() {
+        Pools shutdown = newShutdown(Map.of("pool", poolConfig(true, 0)), null);
+        shutdown.coordinator.start();
+        assertThat(shutdown.coordinator.isRunning()).isTrue();
+        assertThat(((PoolTaskExecutor) shutdown.executors.get("pool")).getPhase())
+                .isLessThan(shutdown.coordinator.getPhase());
+        shutdown.coordinator.stop();
+        assertThat(shutdown.coordinator.isRunning()).isFalse();
+        assertThat(((PoolTaskExecutor) shutdown.executors.get("pool")).getThreadPoolExecutor().isShutdown()).isTrue();
+    }
+
+    private Pools newShutdown(Map<String, PoolConfig> pools, Duration deadline) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.getPools().putAll(pools);
+        ShutdownConfig shutdown = new ShutdownConfig();
+        shutdown.setAwaitTermination(deadline != null);
+        shutdown.setAwaitTerminationPeriod(deadline);
+        properties.setShutdown(shutdown);
+        Map<String, AsyncTaskExecutor> executors = ExecutorTestSupport.createExecutors(properties, context);
+        this.executors = executors;
+        DefaultListableBeanFactory registry = context.getDefaultListableBeanFactory();
+        MultipleExecutorRefresher refresher = new MultipleExecutorRefresher(properties, executors,
+                registry.getBeanProvider(ThreadPoolTaskExecutorCustomizer.class),
+                registry.getBeanProvider(TaskDecorator.class),
+                registry.getBeanProvider(PoolChangeListener.class),
+                registry,
+                context);
+        return new Pools(new MultipleExecutorShutdown(properties, executors, refresher), executors);
+    }
+
+    private static PoolConfig poolConfig(boolean waitForTasks, int shutdownPhase) {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        config.setQueueCapacity(10);
+        config.setWaitForTasksToCompleteShutdown(waitForTasks);
+        config.setShutdownPhase(shutdownPhase);
+        return config;
+    }
+
+    private record Pools(MultipleExecutorShutdown coordinator, Map<String, AsyncTaskExecutor> executors) {
+    }
+}
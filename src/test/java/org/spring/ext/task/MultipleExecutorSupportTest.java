@@ -0,0 +1,122 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.spring.ext.task.ExecutorTestSupport.NamedTaskDecorator;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.CompositeTaskDecorator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies {@link MultipleExecutorSupport} behavior outside a Spring Boot application.
+ *
+ * @author Kevan Simpson
+ */
+public class MultipleExecutorSupportTest {
+
+    @Test
+    public void testComposedTaskDecorators() throws Exception {
+        List<String> runs = new CopyOnWriteArrayList<>();
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean("inner", TaskDecorator.class, () -> new NamedTaskDecorator("inner", runs));
+        context.registerBean("outer", TaskDecorator.class, () -> new NamedTaskDecorator("outer", runs));
+        context.refresh();
+
+        PoolConfig composed = new PoolConfig();
+        composed.setTaskDecorator(List.of("inner", "outer"));
+        PoolConfig single = new PoolConfig();
+        single.setTaskDecorator(List.of("outer"));
+        PoolConfig none = new PoolConfig();
+        Map<String, AsyncTaskExecutor> executors =
+                createExecutors(Map.of("composedPool", composed, "singlePool", single, "nonePool", none), context);
+
+        try {
+            executors.get("composedPool").submit(() -> runs.add("task")).get(5, TimeUnit.SECONDS);
+            assertThat(runs).containsExactly("outer", "inner", "task");
+            runs.clear();
+            executors.get("singlePool").submit(() -> runs.add("task")).get(5, TimeUnit.SECONDS);
+            assertThat(runs).containsExactly("outer", "task");
+            runs.clear();
+            // all decorator beans are applied by default, in their order
+            executors.get("nonePool").submit(() -> runs.add("task")).get(5, TimeUnit.SECONDS);
+            assertThat(runs).containsExactly("outer", "inner", "task");
+        }
+        finally {
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testContextDecoratorsMerged() {
+        ContextPropagator<?> mdc = ContextPropagators.mdc();
+        ContextPropagator<?> locale = ContextPropagators.localeContext();
+        TaskDecorator other = new NamedTaskDecorator("other", new CopyOnWriteArrayList<>());
+        TaskDecorator composed = MultipleExecutorSupport.composeTaskDecorators(List.of(
+                new ContextAwareDecorator(List.of(mdc)), other, new ContextAwareDecorator(List.of(locale))));
+
+        // every context is applied by a single wrapper, in place of the first context-aware decorator
+        assertThat(composed).isInstanceOf(CompositeTaskDecorator.class);
+        ContextAwareDecorator contexts = (ContextAwareDecorator) MultipleExecutorSupport.composeTaskDecorators(
+                List.of(new ContextAwareDecorator(List.of(mdc)), new ContextAwareDecorator(List.of(locale))));
+        assertThat(contexts.getPropagators()).containsExactly(mdc, locale);
+        assertThat(MultipleExecutorSupport.composeTaskDecorators(List.of())).isNull();
+    }
+
+    @Test
+    public void testPrestartAndWarmUp() {
+        AtomicInteger warmUps = new AtomicInteger();
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean("warmUpTask", Runnable.class, () -> warmUps::incrementAndGet);
+        context.refresh();
+
+        WarmUpConfig warmUp = new WarmUpConfig();
+        warmUp.setTasks(5);
+        warmUp.setTask("warmUpTask");
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(3);
+        config.setPrestartCoreThreads(true);
+        config.setLazy(true);
+        config.setWarmUp(warmUp);
+        PoolTaskExecutor pool = (PoolTaskExecutor) createExecutors(Map.of("warmPool", config), context).get("warmPool");
+
+        try {
+            assertThat(pool.getPoolSize()).isEqualTo(3);
+            assertThat(warmUps.get()).isEqualTo(5);
+            // warm-up tasks are not counted in the pool's stats
+            assertThat(pool.getStats().getQueuedHistogram().getCount()).isEqualTo(0L);
+            assertThat(pool.getStats().getExecutedHistogram().getCount()).isEqualTo(0L);
+            assertThat(pool.getStats().getExecutedCount()).isEqualTo(0L);
+            assertThat(pool.getStats().getQueuedCount()).isEqualTo(0L);
+            assertThat(pool.getStats().getExecutedNanos()).isEqualTo(0L);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.spring.ext.task.ExecutorTestSupport.TestTaskDecorator;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ObjectInputFilter;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies that {@link OverflowFile} keeps spilled tasks in order across restarts,
+ * and that a {@link PoolTaskExecutor} spills and replays them.
+ *
+ * @author Kevan Simpson
+ */
+public class OverflowFileTest {
+    private static final List<Integer> RECORDED = new CopyOnWriteArrayList<>();
+    private static final ObjectInputFilter ALLOWED = OverflowFile.filterOf(List.of("org.spring.ext.task.*"));
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    public void clearRecorded() {
+        RECORDED.clear();
+    }
+
+    @Test
+    public void testRecoverInOrder() {
+        Path path = directory.resolve("recover.overflow");
+        OverflowFile overflow = new OverflowFile(path, 4096L, ALLOWED);
+        for (int i = 0; i < 3; i++)
+            assertThat(overflow.append(new RecordingTask(i))).isTrue();
+        // tasks must be serializable
+        assertThat(overflow.append(() -> {})).isFalse();
+        overflow.peek().run();
+        overflow.remove();
+        assertThatIllegalStateException().isThrownBy(() -> new OverflowFile(path, 4096L, ALLOWED));
+        overflow.close();
+        assertThat(overflow.isEmpty()).isTrue();
+        assertThat(overflow.append(new RecordingTask(3))).isFalse();
+
+        OverflowFile reopened = new OverflowFile(path, 4096L, ALLOWED);
+        assertThat(reopened.size()).isEqualTo(2);
+        Runnable task;
+        while ((task = reopened.peek()) != null) {
+            task.run();
+            reopened.remove();
+        }
+        assertThat(RECORDED).containsExactly(0, 1, 2);
+        assertThat(reopened.isEmpty()).isTrue();
+        reopened.close();
+        OverflowFile cleared = new OverflowFile(path, 4096L, ALLOWED);
+        assertThat(cleared.size()).isEqualTo(0);
+        cleared.close();
+    }
+
+    @Test
+    public void testUnlistedClassesDiscarded() {
+        Path path = directory.resolve("filtered.overflow");
+        OverflowFile overflow = new OverflowFile(path, 4096L, ALLOWED);
+        assertThat(overflow.append(new RecordingTask(0))).isTrue();
+        overflow.close();
+
+        OverflowFile reopened = new OverflowFile(path, 4096L, OverflowFile.filterOf(List.of("com.example.*")));
+        try {
+            assertThat(reopened.size()).isEqualTo(1);
+            assertThat(reopened.peek()).isNull();
+            assertThat(reopened.isEmpty()).isTrue();
+        }
+        finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testRefusedWhenFull() {
+        OverflowFile overflow = new OverflowFile(directory.resolve("full.overflow"), 1024L, ALLOWED);
+        int appended = 0;
+        while (overflow.append(new RecordingTask(appended)))
+            appended++;
+        assertThat(appended).isPositive();
+        assertThat(overflow.size()).isEqualTo(appended);
+
+        // space is reclaimed once every task has been replayed
+        while (overflow.peek() != null)
+            overflow.remove();
+        assertThat(overflow.append(new RecordingTask(0))).isTrue();
+        overflow.close();
+    }
+
+    @Test
+    public void testPoolSpillsAndReplays() {
+        // the application's decorator is not applied, as spilled tasks would only be decorated when replayed
+        AtomicInteger decorated = new AtomicInteger();
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean(TestTaskDecorator.class, () -> new TestTaskDecorator(decorated));
+        context.refresh();
+        PoolTaskExecutor pool = (PoolTaskExecutor) createExecutors(Map.of("spillingPool", poolConfig()), context)
+                .get("spillingPool");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> block(release));
+            for (int i = 0; i < 10; i++)
+                pool.execute(new RecordingTask(i));
+            assertThat(pool.getQueueSize()).isEqualTo(2);
+            assertThat(pool.getOverflow().size()).isEqualTo(8);
+            assertThat(pool.getStats().getRejectedCount()).isEqualTo(0L);
+
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> RECORDED.size() == 10);
+            assertThat(RECORDED).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+            assertThat(pool.getOverflow().isEmpty()).isTrue();
+            assertThat(decorated.get()).isEqualTo(0);
+        }
+        finally {
+            release.countDown();
+            shutdown(pool);
+        }
+    }
+
+    @Test
+    public void testReplayedOnRestart() {
+        PoolTaskExecutor pool = (PoolTaskExecutor) newExecutors().get("spillingPool");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> block(release));
+            for (int i = 0; i < 6; i++)
+                pool.execute(new RecordingTask(i));
+            // queued tasks are lost without waiting for them, spilled tasks are not
+            pool.shutdown();
+            assertThat(RECORDED).isEmpty();
+        }
+        finally {
+            release.countDown();
+            shutdown(pool);
+        }
+
+        PoolTaskExecutor restarted = (PoolTaskExecutor) newExecutors().get("spillingPool");
+        try {
+            await().atMost(5, TimeUnit.SECONDS).until(() -> RECORDED.size() == 4);
+            assertThat(RECORDED).containsExactly(2, 3, 4, 5);
+        }
+        finally {
+            shutdown(restarted);
+        }
+    }
+
+    @Test
+    public void testInvalidOverflow() {
+        PoolConfig relative = poolConfig();
+        relative.getOverflow().setDirectory("overflow");
+        assertThrows(IllegalArgumentException.class, () -> createExecutors(Map.of("spillingPool", relative)));
+
+        PoolConfig unfiltered = poolConfig();
+        unfiltered.getOverflow().setAllowedClasses(List.of());
+        assertThrows(IllegalArgumentException.class, () -> createExecutors(Map.of("spillingPool", unfiltered)));
+
+        PoolConfig decorated = poolConfig();
+        decorated.setTaskDecorator(List.of("contextAwareDecorator"));
+        assertThrows(IllegalArgumentException.class, () -> createExecutors(Map.of("spillingPool", decorated)));
+    }
+
+    private Map<String, AsyncTaskExecutor> newExecutors() {
+        return createExecutors(Map.of("spillingPool", poolConfig()));
+    }
+
+    private PoolConfig poolConfig() {
+        OverflowConfig overflow = new OverflowConfig();
+        overflow.setDirectory(directory.toString());
+        overflow.setMaxFileSize(DataSize.ofKilobytes(64L));
+        overflow.setAllowedClasses(List.of("org.spring.ext.task.*"));
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        config.setQueueCapacity(2);
+        config.setOverflow(overflow);
+        return config;
+    }
+
+    /** A serializable task recording its id when run. */
+    private record RecordingTask(int id) implements Runnable, Serializable {
+        @Override
+        public void run() {
+            RECORDED.add(id);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+import static org.spring.ext.task.ExecutorTestSupport.sleep;
+
+/**
+ * Verifies sharing of queued work between pools of a {@link PoolGroup}.
+ *
+ * @author Kevan Simpson
+ */
+public class PoolGroupTest {
+
+    @Test
+    public void testIdlePoolRunsSiblingTasks() {
+        // a single queued task is left to its own pool, so the blocker is not stolen
+        GroupConfig group = new GroupConfig();
+        group.setStealThreshold(2);
+        Map<String, AsyncTaskExecutor> executors = createGroup(group);
+        PoolTaskExecutor busy = (PoolTaskExecutor) executors.get("busyPool");
+        PoolTaskExecutor idle = (PoolTaskExecutor) executors.get("idlePool");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new MultipleExecutorMetrics(executors).bindTo(registry);
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            busy.execute(() -> block(release));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> busy.getActiveCount() == 1);
+            List<String> threads = new CopyOnWriteArrayList<>();
+            for (int i = 0; i < 5; i++)
+                busy.execute(() -> threads.add(Thread.currentThread().getName()));
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> threads.size() == 4);
+            assertThat(threads).allMatch(name -> name.startsWith("idlePool-task-"));
+            assertThat(busy.getQueueSize()).isEqualTo(1);
+            // tasks are timed by the pool they were submitted to
+            await().atMost(5, TimeUnit.SECONDS).until(() -> busy.getStats().getExecutedCount() == 4L);
+            assertThat(idle.getStats().getExecutedCount()).isEqualTo(0L);
+            assertThat(registry.get("executor.steals").tag("name", "idlePool").functionCounter().count())
+                    .isEqualTo(4.0);
+            assertThat(registry.get("executor.steals").tag("name", "busyPool").functionCounter().count())
+                    .isEqualTo(0.0);
+        }
+        finally {
+            release.countDown();
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testStealLimits() {
+        GroupConfig group = new GroupConfig();
+        group.setStealThreshold(3);
+        group.setMaxBorrowedThreads(1);
+        Map<String, AsyncTaskExecutor> executors = createGroup(group);
+        PoolTaskExecutor busy = (PoolTaskExecutor) executors.get("busyPool");
+        StealingTaskQueue idleQueue =
+                (StealingTaskQueue) ((PoolTaskExecutor) executors.get("idlePool")).getThreadPoolExecutor().getQueue();
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            busy.execute(() -> block(release));
+            AtomicInteger borrowed = new AtomicInteger();
+            AtomicInteger maxBorrowed = new AtomicInteger();
+            for (int i = 0; i < 6; i++)
+                busy.execute(() -> {
+                    maxBorrowed.accumulateAndGet(borrowed.incrementAndGet(), Math::max);
+                    sleep(20);
+                    borrowed.decrementAndGet();
+                });
+
+            // siblings leave the last tasks below the threshold
+            await().atMost(5, TimeUnit.SECONDS).until(() -> busy.getQueueSize() == 2);
+            sleep(100);
+            assertThat(busy.getQueueSize()).isEqualTo(2);
+            assertThat(idleQueue.getStolenCount()).isEqualTo(4L);
+            assertThat(maxBorrowed.get()).isEqualTo(1);
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> busy.getStats().getExecutedCount() == 7L);
+        }
+        finally {
+            release.countDown();
+            shutdown(executors);
+        }
+    }
+
+    @Test
+    public void testShutdownLeavesGroup() {
+        Map<String, AsyncTaskExecutor> executors = createGroup(new GroupConfig());
+        PoolTaskExecutor busy = (PoolTaskExecutor) executors.get("busyPool");
+        PoolTaskExecutor idle = (PoolTaskExecutor) executors.get("idlePool");
+        PoolGroup group = ((StealingTaskQueue) busy.getThreadPoolExecutor().getQueue()).getGroup();
+        assertThat(group.getPoolCount()).isEqualTo(2);
+
+        try {
+            idle.shutdown();
+            assertThat(group.getPoolCount()).isEqualTo(1);
+        }
+        finally {
+            shutdown(executors);
+        }
+        assertThat(group.getPoolCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testInvalidGroups() {
+        GroupConfig unknown = new GroupConfig();
+        unknown.setPools(List.of("busyPool", "missingPool"));
+        assertThrows(IllegalArgumentException.class, () -> createGroups(Map.of("unknown", unknown)));
+
+        GroupConfig first = new GroupConfig();
+        first.setPools(List.of("busyPool"));
+        GroupConfig second = new GroupConfig();
+        second.setPools(List.of("busyPool", "idlePool"));
+        assertThrows(IllegalArgumentException.class,
+                () -> createGroups(Map.of("first", first, "second", second)));
+    }
+
+    private static Map<String, AsyncTaskExecutor> createGroup(GroupConfig group) {
+        group.setPools(List.of("busyPool", "idlePool"));
+        return createGroups(Map.of("testGroup", group));
+    }
+
+    private static Map<String, AsyncTaskExecutor> createGroups(Map<String, GroupConfig> groups) {
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.getPools().put("busyPool", poolConfig(1));
+        properties.getPools().put("idlePool", poolConfig(2));
+        properties.getGroups().putAll(groups);
+        properties.setShutdown(new ShutdownConfig());
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.refresh();
+        return createExecutors(properties, context);
+    }
+
+    private static PoolConfig poolConfig(int size) {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(size);
+        config.setMaxSize(size);
+        config.setPrestartCoreThreads(true);
+        return config;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+import static org.spring.ext.task.ExecutorTestSupport.sleep;
+
+/**
+ * Verifies resizing by {@link PoolSizeController} and scheduling by {@link AdaptivePoolSizer}.
+ *
+ * @author Kevan Simpson
+ */
+public class PoolSizeControllerTest {
+
+    @Test
+    public void testGrowsUnderLoadAndShrinksWhenIdle() {
+        AdaptiveConfig adaptive = new AdaptiveConfig();
+        adaptive.setMaxSize(8);
+        adaptive.setInterval(Duration.ofMillis(100L));
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(1);
+        config.setMaxSize(2);
+        config.setAdaptive(adaptive);
+        PoolTaskExecutor pool = (PoolTaskExecutor) createExecutors(Map.of("adaptivePool", config)).get("adaptivePool");
+        PoolSizeController controller = new PoolSizeController("adaptivePool", pool, adaptive);
+
+        try {
+            for (int i = 0; i < 20; i++)
+                pool.execute(() -> sleep(20L));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() >= 2L);
+            int grown = controller.adjust(System.nanoTime());
+            assertThat(grown).isGreaterThan(1).isLessThanOrEqualTo(8);
+            assertThat(pool.getCorePoolSize()).isEqualTo(grown);
+            assertThat(pool.getMaxPoolSize()).isEqualTo(Math.max(grown, 2));
+
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() == 20L);
+            long now = System.nanoTime();
+            int previous = grown;
+            for (int i = 1; i <= 10 && pool.getCorePoolSize() > 1; i++) {
+                int shrunk = controller.adjust(now + i * adaptive.getInterval().toNanos());
+                assertThat(shrunk).isLessThan(previous)
+                        .isGreaterThanOrEqualTo(previous - Math.max(1, previous / 4));
+                previous = shrunk;
+            }
+            assertThat(pool.getCorePoolSize()).isEqualTo(adaptive.getMinSize());
+            assertThat(pool.getMaxPoolSize()).isEqualTo(2);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSizerSchedulesAdaptivePools() {
+        PoolConfig adaptive = new PoolConfig();
+        adaptive.setAdaptive(new AdaptiveConfig());
+        PoolConfig uninstrumented = new PoolConfig();
+        uninstrumented.setAdaptive(new AdaptiveConfig());
+        uninstrumented.setInstrumented(false);
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        properties.getPools().putAll(Map.of(
+                "adaptivePool", adaptive, "uninstrumentedPool", uninstrumented, "staticPool", new PoolConfig()));
+        Map<String, AsyncTaskExecutor> executors = createExecutors(properties.getPools());
+
+        AdaptivePoolSizer sizer = new AdaptivePoolSizer(properties, executors);
+        try {
+            assertThat(sizer.getControllers().keySet()).containsExactly("adaptivePool");
+            sizer.start();
+            assertThat(sizer.isRunning()).isTrue();
+            sizer.stop();
+            assertThat(sizer.isRunning()).isFalse();
+        }
+        finally {
+            sizer.stop();
+            shutdown(executors);
+        }
+
+        AdaptivePoolSizer idle = new AdaptivePoolSizer(new MultipleExecutorProperties(), Map.of());
+        idle.start();
+        assertThat(idle.isRunning()).isFalse();
+    }
+}
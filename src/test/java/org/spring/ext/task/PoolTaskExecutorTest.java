@@ -0,0 +1,204 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.sleep;
+
+/**
+ * Verifies work queues and their scaling behavior in {@link PoolTaskExecutor}.
+ *
+ * @author Kevan Simpson
+ */
+public class PoolTaskExecutorTest {
+
+    @Test
+    public void testLinkedQueueGrowsOnlyWhenFull() {
+        PoolTaskExecutor pool = newPool(QueueType.LINKED, 10);
+        assertThat(pool.getThreadPoolExecutor().getQueue()).isInstanceOf(BoundedTaskQueue.class);
+        assertThat(((BoundedTaskQueue) pool.getThreadPoolExecutor().getQueue()).getQueue())
+                .isInstanceOf(LinkedBlockingQueue.class);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++)
+                pool.execute(() -> block(release));
+            assertThat(pool.getPoolSize()).isEqualTo(1);
+            assertThat(pool.getQueueSize()).isEqualTo(2);
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testScaleThreadsFirst() {
+        PoolTaskExecutor pool = newPool(QueueType.SCALE_THREADS_FIRST, 10);
+        assertThat(pool.getThreadPoolExecutor().getQueue()).isInstanceOf(ScalingTaskQueue.class);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++)
+                pool.execute(() -> block(release));
+            assertThat(pool.getPoolSize()).isEqualTo(3);
+            assertThat(pool.getQueueSize()).isEqualTo(0);
+            pool.execute(() -> block(release));
+            assertThat(pool.getPoolSize()).isEqualTo(3);
+            assertThat(pool.getQueueSize()).isEqualTo(1);
+
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() == 4L);
+            // idle threads take queued tasks without growing the pool
+            pool.execute(() -> {});
+            assertThat(pool.getPoolSize()).isEqualTo(3);
+            assertThat(pool.getStats().getRejectedCount()).isEqualTo(0L);
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTransferQueue() {
+        PoolTaskExecutor pool = newPool(QueueType.TRANSFER, 2);
+        assertThat(pool.getThreadPoolExecutor().getQueue()).isInstanceOf(BoundedTaskQueue.class);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 5; i++)
+                pool.execute(() -> block(release));
+            assertThat(pool.getPoolSize()).isEqualTo(3);
+            assertThat(pool.getQueueSize()).isEqualTo(2);
+            assertThat(pool.getThreadPoolExecutor().getQueue().remainingCapacity()).isEqualTo(0);
+            assertThrows(TaskRejectedException.class, () -> pool.execute(() -> {}));
+            assertThat(pool.getStats().getRejectedCount()).isEqualTo(1L);
+
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() == 5L);
+            assertThat(pool.getQueueSize()).isEqualTo(0);
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+
+        PoolTaskExecutor unbounded = newPool(QueueType.TRANSFER, Integer.MAX_VALUE);
+        assertThat(unbounded.getThreadPoolExecutor().getQueue()).isExactlyInstanceOf(LinkedTransferQueue.class);
+        unbounded.shutdown();
+    }
+
+    @Test
+    public void testPriorityQueue() throws Exception {
+        PoolTaskExecutor pool = newPool(QueueType.PRIORITY, 10);
+        pool.setMaxPoolSize(1);
+        assertThat(pool.getThreadPoolExecutor().getQueue()).isInstanceOf(BoundedTaskQueue.class);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        try {
+            pool.execute(() -> block(release));
+            pool.execute(PriorityTask.of(-1, () -> order.add("low")));
+            pool.execute(PriorityTask.of(5, () -> order.add("high")));
+            pool.execute(() -> order.add("default"));
+            Future<String> future =
+                    pool.submit(PriorityTask.callable(5, () -> order.add("high-2") ? "done" : "failed"));
+            assertThat(pool.getQueueSize()).isEqualTo(4);
+
+            release.countDown();
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("done");
+            await().atMost(5, TimeUnit.SECONDS).until(() -> order.size() == 4);
+            // equal priorities run in submission order
+            assertThat(order).containsExactly("high", "high-2", "default", "low");
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPriorityAging() {
+        PoolConfig config = poolConfig(QueueType.PRIORITY, 10);
+        config.setMaxSize(1);
+        config.setPriorityAging(Duration.ofMillis(10));
+        PoolTaskExecutor pool = (PoolTaskExecutor) createExecutors(Map.of("agingPool", config)).get("agingPool");
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+        try {
+            pool.execute(() -> block(release));
+            pool.execute(PriorityTask.of(0, () -> order.add("old")));
+            sleep(100);
+            pool.execute(PriorityTask.of(2, () -> order.add("recent")));
+            pool.execute(PriorityTask.of(50, () -> order.add("urgent")));
+
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> order.size() == 3);
+            // waiting 100ms outranks two levels of priority, but not fifty
+            assertThat(order).containsExactly("urgent", "old", "recent");
+        }
+        finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testArrayAndSynchronousQueues() {
+        PoolTaskExecutor array = newPool(QueueType.ARRAY, 10);
+        PoolTaskExecutor synchronous = newPool(QueueType.SYNCHRONOUS, 10);
+        try {
+            assertThat(array.getThreadPoolExecutor().getQueue()).isInstanceOf(ArrayBlockingQueue.class);
+            assertThat(synchronous.getThreadPoolExecutor().getQueue()).isInstanceOf(SynchronousQueue.class);
+        }
+        finally {
+            array.shutdown();
+            synchronous.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> newPool(QueueType.ARRAY, Integer.MAX_VALUE));
+    }
+
+    private static PoolTaskExecutor newPool(QueueType queueType, int queueCapacity) {
+        return (PoolTaskExecutor) createExecutors(Map.of("queuePool", poolConfig(queueType, queueCapacity)))
+                .get("queuePool");
+    }
+
+    private static PoolConfig poolConfig(QueueType queueType, int queueCapacity) {
+        PoolConfig config = new PoolConfig();
+        config.setQueueType(queueType);
+        config.setQueueCapacity(queueCapacity);
+        config.setCoreSize(1);
+        config.setMaxSize(3);
+        return config;
+    }
+}
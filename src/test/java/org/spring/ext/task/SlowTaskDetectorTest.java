@@ -0,0 +1,113 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies slow-task detection by {@link SlowTaskDetector} and {@link SlowTaskWatchdog}.
+ *
+ * @author Kevan Simpson
+ */
+public class SlowTaskDetectorTest {
+
+    @Test
+    public void testReportsSlowTaskOnce() {
+        PoolTaskExecutor pool = newPool(false);
+        SlowTaskDetector detector = new SlowTaskDetector("watchedPool", pool.getStats(), watchdog(false));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.execute(() -> block(release));
+            pool.execute(() -> {});
+            assertThat(detector.check()).isEqualTo(0);
+
+            ExecutorTestSupport.sleep(100L);
+            assertThat(detector.check()).isEqualTo(1);
+            assertThat(detector.check()).isEqualTo(0);
+            assertThat(pool.getStats().getSlowCount()).isEqualTo(1L);
+
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> pool.getStats().getExecutedCount() == 2L);
+            assertThat(detector.check()).isEqualTo(0);
+            assertThat(pool.getStats().getRunningTasks().sample()).isEmpty();
+        }
+        finally {
+            release.countDown();
+            shutdown(pool);
+        }
+    }
+
+    @Test
+    public void testWatchdogInterruptsSlowTask() {
+        PoolTaskExecutor pool = newPool(true);
+        MultipleExecutorProperties properties = new MultipleExecutorProperties();
+        PoolConfig config = new PoolConfig();
+        config.setWatchdog(watchdog(true));
+        properties.getPools().put("watchedPool", config);
+        SlowTaskWatchdog watchdog = new SlowTaskWatchdog(properties, Map.of("watchedPool", pool));
+        assertThat(watchdog.getDetectors()).containsOnlyKeys("watchedPool");
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        watchdog.start();
+        try {
+            pool.execute(() -> {
+                try {
+                    Thread.sleep(5_000L);
+                }
+                catch (InterruptedException ex) {
+                    interrupted.set(true);
+                }
+            });
+            await().atMost(2, TimeUnit.SECONDS).untilTrue(interrupted);
+            assertThat(pool.getStats().getSlowCount()).isEqualTo(1L);
+        }
+        finally {
+            watchdog.stop();
+            shutdown(pool);
+        }
+        assertThat(watchdog.isRunning()).isFalse();
+    }
+
+    private static PoolTaskExecutor newPool(boolean interrupt) {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(2);
+        config.setWatchdog(watchdog(interrupt));
+        Map<String, AsyncTaskExecutor> executors = createExecutors(Map.of("watchedPool", config));
+        return (PoolTaskExecutor) executors.get("watchedPool");
+    }
+
+    private static WatchdogConfig watchdog(boolean interrupt) {
+        WatchdogConfig watchdog = new WatchdogConfig();
+        watchdog.setThreshold(Duration.ofMillis(50L));
+        watchdog.setInterval(Duration.ofMillis(10L));
+        watchdog.setInterrupt(interrupt);
+        return watchdog;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+
+/**
+ * Verifies ordering per key by {@link StripedTaskExecutor}.
+ *
+ * @author Kevan Simpson
+ */
+public class StripedTaskExecutorTest {
+
+    @Test
+    public void testOrderedPerKey() throws Exception {
+        StripedTaskExecutor executor = newStripedPool(4, Integer.MAX_VALUE);
+        Map<Integer, List<Integer>> runs = new ConcurrentHashMap<>();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) {
+                int key = i % 10;
+                int sequence = i / 10;
+                futures.add(executor.submitCompletable(key, () -> {
+                    runs.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(sequence);
+                    return sequence;
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertThat(runs).hasSize(10);
+            runs.values().forEach(sequences ->
+                    assertThat(sequences).isEqualTo(IntStream.range(0, 50).boxed().toList()));
+            assertThat(executor.getQueuedCount()).isEqualTo(0);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testLaneRejection() throws Exception {
+        StripedTaskExecutor executor = newStripedPool(1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(1, () -> block(release));
+            CompletableFuture<String> sameKey = executor.submitCompletable(1, () -> "after");
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getQueuedCount() == 1);
+
+            // the only worker is busy with key 1, so another lane cannot be scheduled
+            assertThrows(TaskRejectedException.class, () -> executor.execute(2, () -> {}));
+            assertThat(executor.getStats().getRejectedCount()).isEqualTo(1L);
+            assertThat(executor.getQueuedCount()).isEqualTo(1);
+
+            release.countDown();
+            assertThat(sameKey.get(5, TimeUnit.SECONDS)).isEqualTo("after");
+            // key 2 is accepted once the worker has drained key 1
+            await().atMost(5, TimeUnit.SECONDS).ignoreExceptions().until(() ->
+                    executor.submitCompletable(2, () -> "two").get(5, TimeUnit.SECONDS).equals("two"));
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDiscardPolicyKeepsLanesScheduled() throws Exception {
+        StripedTaskExecutor executor = newStripedPool(1, 0, "DiscardPolicy");
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(1, () -> block(release));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getWorkers().getActiveCount() == 1);
+
+            // a discarded drain would leave the lane marked as scheduled, so key 2 would never run
+            assertThrows(TaskRejectedException.class, () -> executor.execute(2, () -> {}));
+            assertThat(executor.getStats().getRejectedCount()).isEqualTo(1L);
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).ignoreExceptions().until(() ->
+                    executor.submitCompletable(2, () -> "two").get(5, TimeUnit.SECONDS).equals("two"));
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testGracefulShutdownDrainsLanesPastTheDrainLimit() {
+        StripedTaskExecutor executor = newStripedPool(1, Integer.MAX_VALUE);
+        executor.getWorkers().setWaitForTasksToCompleteOnShutdown(true);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        try {
+            executor.execute(1, () -> block(release));
+            for (int i = 0; i < 100; i++)
+                executor.execute(1, runs::incrementAndGet);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getQueuedCount() == 100);
+
+            // the lane cannot be rescheduled after its drain limit once the workers are shut down
+            executor.shutdown();
+            assertThrows(TaskRejectedException.class, () -> executor.execute(1, () -> {}));
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> runs.get() == 100);
+            assertThat(executor.getQueuedCount()).isEqualTo(0);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testShutdownNowDropsLanes() {
+        StripedTaskExecutor executor = newStripedPool(1, Integer.MAX_VALUE);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        try {
+            executor.execute(1, () -> block(release));
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getWorkers().getActiveCount() == 1);
+            for (int i = 0; i < 10; i++)
+                executor.execute(i % 2, runs::incrementAndGet);
+
+            assertThat(executor.shutdownNow()).isEqualTo(10);
+            assertThat(executor.getQueuedCount()).isEqualTo(0);
+            assertThat(executor.getStats().getRejectedCount()).isEqualTo(10L);
+            assertThat(runs.get()).isEqualTo(0);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static StripedTaskExecutor newStripedPool(int threads, int queueCapacity) {
+        return newStripedPool(threads, queueCapacity, null);
+    }
+
+    private static StripedTaskExecutor newStripedPool(int threads, int queueCapacity, String rejectionPolicy) {
+        PoolConfig config = new PoolConfig();
+        config.setType(ExecutorType.STRIPED);
+        config.setCoreSize(threads);
+        config.setMaxSize(threads);
+        config.setQueueCapacity(queueCapacity);
+        config.setStripes(8);
+        config.setRejectedExecutionHandler(rejectionPolicy);
+        return (StripedTaskExecutor) createExecutors(Map.of("stripedPool", config)).get("stripedPool");
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+import static org.spring.ext.task.ExecutorTestSupport.sleep;
+
+/**
+ * Verifies fan-out and join of tasks by a {@link TaskScope}.
+ *
+ * @author Kevan Simpson
+ */
+public class TaskScopeTest {
+    private final Map<String, AsyncTaskExecutor> executors = createExecutors(Map.of("scopePool", poolConfig()));
+    private final MultipleExecutorScopes scopes = new MultipleExecutorScopes(executors);
+
+    @AfterEach
+    public void tearDown() {
+        shutdown(executors);
+    }
+
+    @Test
+    public void testAllOfWithMaxInFlight() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int value = i;
+            tasks.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                return value;
+            });
+        }
+
+        assertThat(scopes.scope("scopePool").maxInFlight(2).allOf(tasks)).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(maxRunning.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAnyOfCancelsStragglers() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+        CountDownLatch interrupted = new CountDownLatch(2);
+        Callable<String> straggler = () -> {
+            started.incrementAndGet();
+            return straggler(interrupted).call();
+        };
+        List<Callable<String>> tasks = List.of(straggler, () -> "fast", straggler);
+
+        assertThat(scopes.scope("scopePool").anyOf(tasks)).isEqualTo("fast");
+        // stragglers are interrupted, unless cancelled before they started
+        await().atMost(5, TimeUnit.SECONDS).until(() -> 2 - interrupted.getCount() == started.get());
+    }
+
+    @Test
+    public void testFirstNToleratesFailures() throws Exception {
+        List<Callable<Integer>> tasks = List.of(
+                () -> { throw new IllegalStateException("failed"); }, () -> 1, () -> 2, () -> 3);
+
+        List<Integer> results = scopes.scope("scopePool").cancelOnFailure(false).maxInFlight(1).firstN(tasks, 2);
+        assertThat(results).containsExactly(1, 2);
+
+        ExecutionException ex = assertThrows(ExecutionException.class,
+                () -> scopes.scope("scopePool").maxInFlight(1).firstN(tasks, 2));
+        assertThat(ex).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testTimeoutCancelsAndSkipsTasks() {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        AtomicInteger started = new AtomicInteger();
+        List<Callable<String>> tasks = new ArrayList<>();
+        tasks.add(straggler(interrupted));
+        for (int i = 0; i < 3; i++)
+            tasks.add(() -> String.valueOf(started.incrementAndGet()));
+
+        assertThrows(TimeoutException.class,
+                () -> scopes.scope("scopePool").timeout(Duration.ofMillis(50L)).maxInFlight(1).allOf(tasks));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> interrupted.getCount() == 0L);
+        sleep(50);
+        assertThat(started.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testUnknownPool() {
+        assertThrows(IllegalArgumentException.class, () -> scopes.scope("missingPool"));
+    }
+
+    private static Callable<String> straggler(CountDownLatch interrupted) {
+        return () -> {
+            try {
+                Thread.sleep(10_000L);
+                return "slow";
+            }
+            catch (InterruptedException ex) {
+                interrupted.countDown();
+                throw ex;
+            }
+        };
+    }
+
+    private static PoolConfig poolConfig() {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(4);
+        return config;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+
+/**
+ * Verifies rate and concurrency limits of {@link ThrottledTaskExecutor}.
+ *
+ * @author Kevan Simpson
+ */
+public class ThrottledTaskExecutorTest {
+
+    @Test
+    public void testTokenBucketBurst() {
+        TokenBucket bucket = new TokenBucket(5.0);
+        for (int i = 0; i < 5; i++)
+            assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+        // an unused permit is returned
+        bucket.release();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+        assertThat(bucket.nanosUntilAvailable())
+                .isPositive()
+                .isLessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(200L));
+        await().atMost(1, TimeUnit.SECONDS).until(bucket::tryAcquire);
+    }
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        PoolConfig config = poolConfig();
+        config.setMaxConcurrentTasks(2);
+        ThrottledTaskExecutor executor = createThrottled(config);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 6; i++)
+                futures.add(executor.submitCompletable(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    block(release);
+                    running.decrementAndGet();
+                }));
+
+            // waiting tasks do not occupy worker threads
+            await().atMost(5, TimeUnit.SECONDS).until(() -> running.get() == 2);
+            assertThat(executor.getPendingCount()).isEqualTo(4);
+            assertThat(executor.getWorkers().getActiveCount()).isEqualTo(2);
+            release.countDown();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertThat(maxRunning.get()).isEqualTo(2);
+            assertThat(executor.getPendingCount()).isEqualTo(0);
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getStats().getExecutedCount() == 6L);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        PoolConfig config = poolConfig();
+        config.setMaxTasksPerSecond(20.0);
+        ThrottledTaskExecutor executor = createThrottled(config);
+        List<Long> started = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < 30; i++)
+                futures.add(executor.submitCompletable(() -> { started.add(System.nanoTime()); }));
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            // a burst of 20, then 10 more at 20 per second
+            assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(450L));
+            assertThat(started).hasSize(30);
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testPendingCapacity() {
+        PoolConfig config = poolConfig();
+        config.setMaxConcurrentTasks(1);
+        config.setQueueCapacity(2);
+        ThrottledTaskExecutor executor = createThrottled(config);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++)
+                executor.execute(() -> block(release));
+            assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {}));
+            assertThat(executor.getStats().getRejectedCount()).isEqualTo(1L);
+            release.countDown();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> executor.getPendingCount() == 0);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDroppedTasksAreCancelled() {
+        PoolConfig config = poolConfig();
+        config.setMaxConcurrentTasks(1);
+        ThrottledTaskExecutor executor = createThrottled(config);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> block(release));
+            Future<?> first = executor.submit(() -> {});
+            Future<?> second = executor.submit(() -> {});
+            assertThat(executor.getPendingCount()).isEqualTo(2);
+
+            executor.shutdown();
+            assertThat(first.isCancelled()).isTrue();
+            assertThat(second.isCancelled()).isTrue();
+            assertThat(executor.getPendingCount()).isEqualTo(0);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWaitingShutdownStartsPendingTasks() throws Exception {
+        PoolConfig config = poolConfig();
+        config.setMaxConcurrentTasks(1);
+        config.setMaxTasksPerSecond(20.0);
+        ThrottledTaskExecutor executor = createThrottled(config);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> block(release));
+            Future<?> first = executor.submit(() -> {});
+            Future<?> second = executor.submit(() -> {});
+            assertThat(executor.getPendingCount()).isEqualTo(2);
+
+            // as when a refreshed configuration removes the pool
+            executor.getWorkers().setWaitForTasksToCompleteOnShutdown(true);
+            executor.destroy();
+            assertThrows(TaskRejectedException.class, () -> executor.execute(() -> {}));
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            await().atMost(5, TimeUnit.SECONDS)
+                    .until(() -> executor.getWorkers().getThreadPoolExecutor().isTerminated());
+        }
+        finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDiscardPolicyCancelsRejectedTasks() {
+        PoolConfig config = poolConfig();
+        config.setCoreSize(1);
+        config.setMaxSize(1);
+        config.setQueueCapacity(1);
+        config.setMaxTasksPerSecond(2.0);
+        config.setRejectedExecutionHandler("DiscardPolicy");
+        ThrottledTaskExecutor executor = createThrottled(config);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // a burst of two fills the only worker and its queue
+            executor.execute(() -> block(release));
+            executor.execute(() -> {});
+            Future<?> pending = executor.submit(() -> {});
+            assertThat(executor.getPendingCount()).isEqualTo(1);
+
+            // a discarded task would never complete, nor return its permit
+            await().atMost(5, TimeUnit.SECONDS).until(pending::isCancelled);
+            assertThat(executor.getStats().getRejectedCount()).isEqualTo(1L);
+        }
+        finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static PoolConfig poolConfig() {
+        PoolConfig config = new PoolConfig();
+        config.setCoreSize(4);
+        return config;
+    }
+
+    private static ThrottledTaskExecutor createThrottled(PoolConfig config) {
+        Map<String, AsyncTaskExecutor> executors = createExecutors(Map.of("throttledPool", config));
+        assertThat(executors.get("throttledPool")).isInstanceOf(ThrottledTaskExecutor.class);
+        return (ThrottledTaskExecutor) executors.get("throttledPool");
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2021 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spring.ext.task;
+
+import org.junit.jupiter.api.Test;
+import org.spring.ext.task.ExecutorTestSupport.TestTaskDecorator;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.spring.ext.task.ExecutorTestSupport.block;
+import static org.spring.ext.task.ExecutorTestSupport.createExecutors;
+import static org.spring.ext.task.ExecutorTestSupport.shutdown;
+
+/**
+ * Verifies behavior of {@link VirtualTaskExecutor}, using platform threads where virtual threads are unsupported.
+ *
+ * @author Kevan Simpson
+ */
+public class VirtualTaskExecutorTest {
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        VirtualTaskExecutor executor = new VirtualTaskExecutor(Executors.defaultThreadFactory(), 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 6; i++) {
+                futures.add(executor.submitCompletable(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    block(release);
+                    running.decrementAndGet();
+                }));
+            }
+
+            while (executor.getQueueSize() < 4)
+                Thread.sleep(10);
+            assertThat(running.get()).isEqualTo(2);
+            release.countDown();
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertThat(maxRunning.get()).isEqualTo(2);
+            assertThat(executor.getQueueSize()).isEqualTo(0);
+        }
+        finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testTaskDecorator() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        VirtualTaskExecutor executor = new VirtualTaskExecutor(
+                Executors.defaultThreadFactory(), VirtualTaskExecutor.UNBOUNDED_CONCURRENCY);
+        executor.setTaskDecorator(new TestTaskDecorator(counter));
+        assertThat(executor.submit(() -> "done").get(5, TimeUnit.SECONDS)).isEqualTo("done");
+        assertThat(counter.get()).isEqualTo(1);
+        assertThat(executor.getQueueSize()).isEqualTo(0);
+    }
+
+    @Test
+    public void testVirtualTypeMatchesRuntime() {
+        PoolConfig config = new PoolConfig();
+        config.setType(ExecutorType.VIRTUAL);
+        config.setConcurrencyLimit(4);
+        Map<String, AsyncTaskExecutor> executors = createExecutors(Map.of("virtualPool", config));
+
+        try {
+            if (Runtime.version().feature() >= 21) {
+                assertThat(VirtualTaskExecutor.isSupported()).isTrue();
+                assertThat(executors.get("virtualPool")).isInstanceOf(VirtualTaskExecutor.class);
+            }
+            else {
+                assertThat(VirtualTaskExecutor.isSupported()).isFalse();
+                assertThat(executors.get("virtualPool")).isInstanceOf(ThreadPoolTaskExecutor.class);
+            }
+        }
+        finally {
+            shutdown(executors);
+        }
+    }
+}